@@ -7,18 +7,37 @@
  * License: This file is licensed under the MIT License.
  */
 
-import io.PPMExporter;
+import io.DeltaFrameWriter;
+import io.FrameExportPipeline;
+import io.RunManifest;
 import percolation.Comparison;
 import percolation.Grid;
+import percolation.Lattice;
+import percolation.MappedCellStorage;
+import percolation.NewmanZiff;
 import percolation.PercolationSolver;
+import percolation.PercolationStats;
+import percolation.StorageFactory;
+import unionfind.IUnionFind;
+import unionfind.UnionFindMapped;
+import unionfind.UnionFindMetrics;
+import unionfind.UnionFindType;
 import utils.Logger;
+import utils.Metrics;
 import utils.Stopwatch;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Main {
+    private static final int STOP_TIMEOUT_SECONDS = 60; // longest wait of Ctrl-C for the files to be left complete
+
     public static void main(String[] args) {
         Logger.writeLine("Start!\n");
         Stopwatch timer = new Stopwatch();
@@ -39,7 +58,24 @@ public class Main {
                 "\tGrid resolution: -res N",
                 "\tWrite cell data to console: -console",
                 "\tWrite cell data to PPM file: -image",
-                "\tRun in multiple threads: -ll\n");
+                "\tWrite binary (P6) PPM files: -binary",
+                "\tWrite changed cells to 'saves/frames.delta', a full frame every K iterations: -delta K",
+                "\t... or a full frame every P% of porosity: -deltaporosity P",
+                "\tRun in multiple threads: -ll",
+                "\tLog each randomly opened cell: -debug",
+                "\tCount the UnionFind operations and time the phases of the iterations: -metrics",
+                "\t... and print the metrics every K iterations: -metricsevery K",
+                "\tRe-check all cells after each opening: -rescan",
+                "\tSeed of the random cell selection: -seed S",
+                "\tEstimate the percolation threshold over T trials: -trials T",
+                "\t... or write the cluster statistics over B bins of p to 'saves/sweep.csv': -sweep B",
+                "\tLattice of the cells, a 3D one has N layers of N x N cells: -lattice square|triangular|honeycomb|cubic",
+                "\tWrap the side boundaries around: -periodic",
+                "\tOpen the bonds between the cells instead of the cells, on a square lattice: -bond",
+                "\tReport the steps at which a cluster spans top-bottom, left-right (winds around, if periodic) and all sides: -spanning",
+                "\tStore 2 bits per cell instead of 32: -packed",
+                "\tKeep the cells, the UnionFind and the solver arrays in files in 'saves', resume from them: -mapped",
+                "\tUnionFind algorithm: -uf quick_find|quick_union|weighted|weighted_fast|rank_full|rank_splitting|rank_halving|concurrent\n");
 
         // allow the unicode characters support
         System.setProperty("file.encoding", "UTF-8");
@@ -60,9 +96,26 @@ public class Main {
         // define the program settings
         boolean writeToConsole = false; // write grid data to console
         boolean writeToImage = false; // write grid data to image
+        boolean binaryImage = false; // write binary P6 images instead of ASCII P3 ones
         int res = 12; // cells count in each direction
         int imageMinRes = 300; // minimal resolution of the image to save to
         boolean ll = false; // run on multiple processors
+        boolean debug = false; // log each randomly opened cell
+        boolean metrics = false; // count the UnionFind operations and time the phases
+        int metricsInterval = 0; // iterations between the printouts of the metrics, at the end only if zero
+        boolean rescan = false; // re-check all cells instead of the incremental fill
+        Long seed = null; // seed of the random number generator, not seeded by default
+        int trials = 0; // number of Monte Carlo trials, a single visualized run if zero
+        int sweepBins = 0; // bins of the occupation fraction in the sweep, the threshold estimation if zero
+        boolean packed = false; // bit-packed storage of the grid cells
+        boolean mapped = false; // off-heap storage of the per-cell arrays in memory-mapped files
+        UnionFindType connectivityType = UnionFindType.WEIGHTED_FAST; // dynamic connectivity algorithm
+        Lattice.Type latticeType = Lattice.Type.SQUARE; // neighbours of the cells
+        boolean periodic = false; // periodic side boundaries
+        PercolationSolver.Mode mode = PercolationSolver.Mode.SITE; // site or bond percolation
+        boolean spanning = false; // track the sides of the grid touched by the clusters
+        int keyframeInterval = 0; // iterations between the full frames of the delta stream
+        int keyframePorosityStep = 0; // porosity step [%] between the full frames of the delta stream
 
         // parse command-line arguments
         if (args.length > 0) {
@@ -74,55 +127,303 @@ public class Main {
                         Logger.writeLine("Invalid resolution value. Using default!");
                     }
                     i++; // Skip the next argument
+                } else if (args[i].equals("-seed") && i + 1 < args.length) {
+                    try {
+                        seed = Long.parseLong(args[i + 1]);
+                    } catch (NumberFormatException ex) {
+                        Logger.writeLine("Invalid seed value. Using unseeded!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-trials") && i + 1 < args.length) {
+                    try {
+                        trials = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException ex) {
+                        Logger.writeLine("Invalid trials count. Running a single simulation!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-sweep") && i + 1 < args.length) {
+                    try {
+                        sweepBins = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException ex) {
+                        Logger.writeLine("Invalid bins count. Estimating the threshold!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-delta") && i + 1 < args.length) {
+                    try {
+                        keyframeInterval = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException ex) {
+                        Logger.writeLine("Invalid keyframe interval. Writing full frames!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-deltaporosity") && i + 1 < args.length) {
+                    try {
+                        keyframePorosityStep = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException ex) {
+                        Logger.writeLine("Invalid keyframe porosity step. Writing full frames!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-uf") && i + 1 < args.length) {
+                    try {
+                        connectivityType = UnionFindType.valueOf(args[i + 1].toUpperCase());
+                    } catch (IllegalArgumentException ex) {
+                        Logger.writeLine("Invalid UnionFind algorithm. Using default!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-lattice") && i + 1 < args.length) {
+                    try {
+                        latticeType = Lattice.Type.valueOf(args[i + 1].toUpperCase());
+                    } catch (IllegalArgumentException ex) {
+                        Logger.writeLine("Invalid lattice. Using default!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-periodic")) {
+                    periodic = true;
+                } else if (args[i].equals("-bond")) {
+                    mode = PercolationSolver.Mode.BOND;
+                } else if (args[i].equals("-spanning")) {
+                    spanning = true;
                 } else if (args[i].equals("-console")) {
                     writeToConsole = true;
                 } else if (args[i].equals("-image")) {
                     writeToImage = true;
+                } else if (args[i].equals("-binary")) {
+                    binaryImage = true;
                 } else if (args[i].equals("-ll")) {
                     ll = true;
+                } else if (args[i].equals("-debug")) {
+                    debug = true;
+                } else if (args[i].equals("-metrics")) {
+                    metrics = true;
+                } else if (args[i].equals("-metricsevery") && i + 1 < args.length) {
+                    metrics = true;
+                    try {
+                        metricsInterval = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException ex) {
+                        Logger.writeLine("Invalid metrics interval. Printing the metrics at the end!");
+                    }
+                    i++; // Skip the next argument
+                } else if (args[i].equals("-rescan")) {
+                    rescan = true;
+                } else if (args[i].equals("-packed")) {
+                    packed = true;
+                } else if (args[i].equals("-mapped")) {
+                    mapped = true;
                 }
             }
         }
 
-        // perform the simulation
-        try {
-            Grid grid = new Grid(res, res);
-            PercolationSolver sol = new PercolationSolver(grid, ll, true);
-            int maxIter = grid.cellsCount();
-            for (int iter = 0; iter < maxIter; iter++) {
-                if (writeToConsole && (iter == 0)) {
-                    Logger.writeLine("Initial state of the cells:");
-                    Logger.write(grid.toString());
-                    Logger.writeLine("------------------------------------");
+        // sweep the occupation fraction
+        if (trials > 0 && sweepBins > 0) {
+            try {
+                NewmanZiff sweep = new NewmanZiff(res, res, trials,
+                        (seed != null) ? seed : System.nanoTime());
+                String fileName = Paths.get(savesDirName, "sweep.csv").toString();
+                sweep.writeCsv(fileName, sweepBins);
+                Logger.write("Trials =", trials, ", Resolution =", res, "\n");
+                Logger.write("Cluster statistics are written to", fileName, "\n");
+            } catch (Exception e) {
+                Logger.writeLine(e.getMessage());
+            }
+        } else if (trials > 0) {
+            // estimate the percolation threshold
+            try {
+                PercolationStats stats = new PercolationStats(res, trials,
+                        (seed != null) ? seed : System.nanoTime(),
+                        ll ? Runtime.getRuntime().availableProcessors() : 1, mode);
+                Logger.write("Trials =", trials, ", Resolution =", res, "\n");
+                Logger.write("Mean threshold =", stats.mean(), "\n");
+                Logger.write("Standard deviation =", stats.stddev(), "\n");
+                Logger.write("95% confidence interval = [", stats.confidenceLo(), ",", stats.confidenceHi(), "]\n");
+            } catch (Exception e) {
+                Logger.writeLine(e.getMessage());
+            }
+        } else {
+            // perform the simulation
+            AtomicBoolean stopRequested = new AtomicBoolean(); // set on Ctrl-C to a -mapped run
+            CountDownLatch stopped = new CountDownLatch(1); // the run has left its files complete, or failed
+            try {
+                Lattice lattice = Lattice.of(latticeType, res, periodic);
+                MappedCellStorage mappedCells = null;
+                UnionFindMapped mappedConnectivity = null;
+                RunManifest manifest = null;
+                boolean resume = false;
+                StorageFactory storage = StorageFactory.HEAP;
+                Grid grid;
+                if (mapped) {
+                    mappedCells = new MappedCellStorage(Paths.get(savesDirName, "grid.cells"), lattice.cellsCount());
+                    grid = new Grid(lattice.rowsCount(), lattice.columnsCount(), mappedCells);
+                    mappedConnectivity = new UnionFindMapped(Paths.get(savesDirName, "uf.parent"),
+                            Paths.get(savesDirName, "uf.size"), (long) lattice.cellsCount() + 2);
+                    // the index of the closed cells and the flood stack are rebuilt from the cells by the solver
+                    storage = (name, length) -> {
+                        try {
+                            return new MappedCellStorage(Paths.get(savesDirName, name), length);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    };
+                    Properties run = new Properties();
+                    run.setProperty("rows", Integer.toString(lattice.rowsCount()));
+                    run.setProperty("cols", Integer.toString(lattice.columnsCount()));
+                    run.setProperty("lattice", lattice.type().toString());
+                    run.setProperty("periodic", Boolean.toString(lattice.periodic()));
+                    run.setProperty("mode", mode.toString());
+                    manifest = new RunManifest(Paths.get(savesDirName, "run.properties"), run);
+                    // the bonds are not kept in the files, a bond run always starts over
+                    if (mode != PercolationSolver.Mode.BOND && mappedCells.reopened() && mappedConnectivity.reopened()) {
+                        String refusal = manifest.resumeRefusal();
+                        resume = refusal == null;
+                        if (!resume) {
+                            Logger.write("Starting over,", refusal, "\n");
+                        }
+                    }
+                    // a run killed from now on leaves the files dirty, so they are never resumed
+                    manifest.markDirty();
+                    // on Ctrl-C the run stops after the current iteration, and leaves the files complete
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        stopRequested.set(true);
+                        try {
+                            stopped.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }));
+                } else {
+                    grid = new Grid(lattice.rowsCount(), lattice.columnsCount(),
+                            packed ? Grid.Storage.PACKED : Grid.Storage.INT);
                 }
-                // open a cell
-                sol.openRandom(true);
-                //sol.open(ids[iter, 0], ids[iter, 1]);
-                // check all opened cell if they are accessible to fluid flow from the top side
-                sol.updateCellsFilledStatus();
-                // cells, which status > than 'closed' are either opened or opened-and-filled
-                int filledCellsCount = grid.countOfCellsWithValue(
-                        Grid.is(Grid.Status.CLOSED), Comparison.Operator.GREATER_THAN);
-                Logger.write("Iteration:", iter,
-                        ", Opened cells = ", filledCellsCount,
-                        ", Porosity = ", 100 * filledCellsCount / grid.cellsCount(), "%, ",
-                        sol.percolatesTotally() ? "Percolates!" : "Does not percolate", "\n");
-                if (writeToConsole) {
-                    Logger.write(grid.toString());
+                int writersCount = ll ? Runtime.getRuntime().availableProcessors() : 1;
+                boolean deltaFrames = keyframeInterval > 0 || keyframePorosityStep > 0;
+                if (deltaFrames) {
+                    grid.trackChanges(true);
                 }
-                Logger.writeLine("------------------------------------");
-                // save to image
-                if (writeToImage) {
-                    String fileName = Paths.get(savesDirName, String.format("%06d.ppm", iter)).toString();
-                    PPMExporter.writeFile(grid.rawData(),
-                            grid.rowsCount(), grid.columnsCount(), fileName,
-                            Grid.is(Grid.Status.CLOSED),
-                            Grid.is(Grid.Status.OPENED_AND_FILLED),
-                            (res < imageMinRes) ? imageMinRes / res : 1);
+                // frames are written on background threads, while the next cells are opened
+                try (FrameExportPipeline exporter = !writeToImage ? null : new FrameExportPipeline(
+                        grid.rowsCount(), grid.columnsCount(),
+                        Grid.is(Grid.Status.CLOSED),
+                        Grid.is(Grid.Status.OPENED_AND_FILLED),
+                        (res < imageMinRes) ? imageMinRes / res : 1,
+                        binaryImage, writersCount, 2 * writersCount);
+                     DeltaFrameWriter deltaWriter = !deltaFrames ? null : new DeltaFrameWriter(
+                             Paths.get(savesDirName, "frames.delta").toString(),
+                             grid.rowsCount(), grid.columnsCount(),
+                             Grid.is(Grid.Status.CLOSED),
+                             Grid.is(Grid.Status.OPENED_AND_FILLED))) {
+                    PercolationSolver.FillMode fillMode = rescan
+                            ? PercolationSolver.FillMode.RESCAN : PercolationSolver.FillMode.INCREMENTAL;
+                    Metrics runMetrics = metrics ? new Metrics() : null;
+                    IUnionFind connectivity = (mappedConnectivity != null)
+                            ? mappedConnectivity : connectivityType.create(lattice.cellsCount() + 2);
+                    if (runMetrics != null) {
+                        connectivity = UnionFindMetrics.wrap(connectivity, runMetrics);
+                    }
+                    PercolationSolver sol = new PercolationSolver(grid, lattice, connectivity, mode, ll, debug, fillMode,
+                            storage);
+                    boolean bond = mode == PercolationSolver.Mode.BOND;
+                    if (mapped) {
+                        if (resume) {
+                            Logger.write("Resuming from", sol.openedCellsCount(), "opened cells\n");
+                        } else {
+                            sol.reset();
+                        }
+                    }
+                    if (seed != null) {
+                        sol.setSeed(seed);
+                    }
+                    if (spanning) {
+                        sol.trackSpanning();
+                    }
+                    int maxIter = bond ? sol.bondsCount() : grid.cellsCount();
+                    int keyframePorosity = 0; // porosity at the last keyframe
+                    boolean firstFrame = true; // a resumed run starts a new delta stream, so it needs a keyframe too
+                    int iter;
+                    for (iter = bond ? sol.openedBondsCount() : sol.openedCellsCount();
+                         iter < maxIter && !stopRequested.get(); iter++) {
+                        if (writeToConsole && firstFrame) {
+                            Logger.writeLine("Initial state of the cells:");
+                            Logger.write(grid.toString());
+                            Logger.writeLine("------------------------------------");
+                        }
+                        // open a cell
+                        long mark = Metrics.mark(runMetrics);
+                        sol.openRandom(true);
+                        //sol.open(ids[iter, 0], ids[iter, 1]);
+                        mark = Metrics.lap(runMetrics, Metrics.Phase.OPEN, mark);
+                        // check all opened cell if they are accessible to fluid flow from the top side
+                        sol.updateCellsFilledStatus();
+                        mark = Metrics.lap(runMetrics, Metrics.Phase.FILL, mark);
+                        // cells, which status > than 'closed' are either opened or opened-and-filled
+                        int filledCellsCount = bond ? sol.openedBondsCount() : grid.countOfCellsWithValue(
+                                Grid.is(Grid.Status.CLOSED), Comparison.Operator.GREATER_THAN);
+                        int porosity = 100 * filledCellsCount / maxIter;
+                        boolean percolates = sol.percolatesTotally();
+                        int clustersCount = sol.tracksClusters() ? sol.clustersCount() : 0;
+                        int largestCluster = sol.tracksClusters() ? sol.largestClusterSize() : 0;
+                        Metrics.lap(runMetrics, Metrics.Phase.COUNT, mark);
+                        Logger.write("Iteration:", iter,
+                                bond ? ", Opened bonds = " : ", Opened cells = ", filledCellsCount,
+                                ", Porosity = ", porosity, "%, ",
+                                percolates ? "Percolates!" : "Does not percolate", "\n");
+                        if (sol.tracksClusters()) {
+                            Logger.write("Clusters =", clustersCount,
+                                    ", Largest cluster =", largestCluster, "cells\n");
+                        }
+                        if (writeToConsole) {
+                            Logger.write(grid.toString());
+                        }
+                        Logger.writeLine("------------------------------------");
+                        // save the changed cells, and the whole grid at keyframes only
+                        mark = Metrics.mark(runMetrics);
+                        boolean keyframe = true;
+                        if (deltaWriter != null) {
+                            keyframe = firstFrame
+                                    || (keyframeInterval > 0 && iter % keyframeInterval == 0)
+                                    || (keyframePorosityStep > 0
+                                        && porosity / keyframePorosityStep != keyframePorosity / keyframePorosityStep);
+                            if (keyframe) {
+                                deltaWriter.writeKeyframe(iter, grid::readRow);
+                                keyframePorosity = porosity;
+                            } else {
+                                deltaWriter.writeDelta(iter, grid.changedCells(), grid.changesCount(), grid::get);
+                            }
+                            grid.clearChanges();
+                        }
+                        firstFrame = false;
+                        // save to image
+                        if (exporter != null && keyframe) {
+                            String fileName = Paths.get(savesDirName, String.format("%06d.ppm", iter)).toString();
+                            exporter.submit(fileName, grid::readRow);
+                        }
+                        Metrics.lap(runMetrics, Metrics.Phase.EXPORT, mark);
+                        if (runMetrics != null && metricsInterval > 0 && (iter + 1) % metricsInterval == 0) {
+                            Logger.write("Metrics after", iter + 1, "iterations:\n");
+                            runMetrics.print();
+                        }
+                    }
+                    if (runMetrics != null) {
+                        Logger.writeLine("Metrics:");
+                        runMetrics.print();
+                    }
+                    if (spanning) {
+                        for (PercolationSolver.Spanning criterion : PercolationSolver.Spanning.values()) {
+                            Logger.write("Spans", criterion, "at", bond ? "opened bonds =" : "opened cells =",
+                                    sol.spanningStep(criterion), "\n");
+                        }
+                    }
+                    if (mapped) {
+                        mappedCells.force();
+                        mappedConnectivity.force();
+                        manifest.markClean();
+                        if (iter < maxIter) {
+                            Logger.write("Stopped after", iter, "iterations, a -mapped run resumes from here\n");
+                        }
+                    }
                 }
+            } catch (Exception e) {
+                Logger.writeLine(e.getMessage());
+            } finally {
+                stopped.countDown();
             }
-        } catch (Exception e) {
-            Logger.writeLine(e.getMessage());
         }
 
         Logger.writeLine("Ok!");
@@ -0,0 +1,47 @@
+/*
+ * File: CSVExporter.java
+ * Description: Writes columns of numeric data to a CSV file.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * A minimal comma-separated values writer
+ */
+public class CSVExporter {
+
+    /**
+     * Writes columns of equal length into the file, one row per line
+     *
+     * @param fileName File path and name with *.CSV extension
+     * @param header   Column names
+     * @param columns  Column values
+     */
+    public static void writeFile(String fileName, String[] header, double[]... columns) throws IOException {
+        if (header.length != columns.length) {
+            throw new IllegalArgumentException("Header and columns count should be equal!");
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write(String.join(",", header));
+            writer.write("\n");
+            int rows = (columns.length > 0) ? columns[0].length : 0;
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns.length; col++) {
+                    if (col > 0) {
+                        writer.write(",");
+                    }
+                    writer.write(Double.toString(columns[col][row]));
+                }
+                writer.write("\n");
+            }
+        }
+    }
+}
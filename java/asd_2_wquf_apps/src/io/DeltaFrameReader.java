@@ -0,0 +1,123 @@
+/*
+ * File: DeltaFrameReader.java
+ * Description: Rebuilds frames from a stream written by the DeltaFrameWriter.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Rebuilds any frame of a keyframe/delta stream and optionally saves it as a PPM image.
+ * Usage: java -cp asd_2_wquf_apps.jar io.DeltaFrameReader frames.delta FRAME output.ppm [upScaleFactor]
+ */
+public class DeltaFrameReader {
+    private int rows;
+    private int cols;
+    private int minValue;
+    private int maxValue;
+    private int[] cellData;
+
+    /**
+     * Reads the stream up to the requested frame
+     *
+     * @param fileName File path and name of the stream
+     * @param frame    Index of the frame to rebuild
+     * @throws IOException If the stream is broken or does not contain the frame
+     */
+    public DeltaFrameReader(String fileName, int frame) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16))) {
+            if (in.readInt() != DeltaFrameWriter.MAGIC || in.readInt() != DeltaFrameWriter.VERSION) {
+                throw new IOException("Not a delta frame stream: " + fileName);
+            }
+            rows = in.readInt();
+            cols = in.readInt();
+            minValue = in.readInt();
+            maxValue = in.readInt();
+            cellData = new int[rows * cols];
+            byte[] keyframe = new byte[rows * cols];
+            boolean found = false;
+            boolean hasKeyframe = false;
+            try {
+                while (!found) {
+                    byte type = in.readByte();
+                    int recordFrame = in.readInt();
+                    if (recordFrame > frame) {
+                        break;
+                    }
+                    if (type == DeltaFrameWriter.KEYFRAME) {
+                        in.readFully(keyframe);
+                        for (int i = 0; i < keyframe.length; i++) {
+                            cellData[i] = keyframe[i];
+                        }
+                        hasKeyframe = true;
+                    } else if (type == DeltaFrameWriter.DELTA) {
+                        int runsCount = in.readInt();
+                        for (int run = 0; run < runsCount; run++) {
+                            int start = in.readInt();
+                            int length = in.readInt();
+                            byte value = in.readByte();
+                            for (int i = start; i < start + length; i++) {
+                                cellData[i] = value;
+                            }
+                        }
+                    } else {
+                        throw new IOException("Unknown record type: " + type);
+                    }
+                    found = (recordFrame == frame);
+                }
+            } catch (EOFException e) {
+                // the stream ended before the frame
+            }
+            if (!found || !hasKeyframe) {
+                throw new IOException("Frame " + frame + " is not in the stream: " + fileName);
+            }
+        }
+    }
+
+    /**
+     * Getter for the rows count.
+     */
+    public int rowsCount() {
+        return rows;
+    }
+
+    /**
+     * Getter for the columns count.
+     */
+    public int columnsCount() {
+        return cols;
+    }
+
+    /**
+     * Getter for the cell values of the rebuilt frame.
+     */
+    public int[] rawData() {
+        return cellData;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: DeltaFrameReader frames.delta FRAME output.ppm [upScaleFactor]");
+            System.exit(1);
+        }
+        try {
+            DeltaFrameReader reader = new DeltaFrameReader(args[0], Integer.parseInt(args[1]));
+            int upScaleFactor = (args.length > 3) ? Integer.parseInt(args[3]) : 1;
+            PPMExporter.writeBinaryFile(
+                    (row, buffer) -> System.arraycopy(reader.cellData, row * reader.cols, buffer, 0, reader.cols),
+                    reader.rows, reader.cols, args[2], reader.minValue, reader.maxValue, upScaleFactor);
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * File: DeltaFrameWriter.java
+ * Description: Writes a stream of keyframes and delta records of pseudo 2D integer data.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Writes the frames of a simulation as a single binary stream of records:
+ * a keyframe holds all cell values, and a delta record holds only the cells
+ * changed since the previous frame, as runs of consecutive cells with the same new value.
+ * Stream layout, all integers are big-endian:
+ *   header:   int MAGIC, int VERSION, int rows, int cols, int minValue, int maxValue
+ *   keyframe: byte KEYFRAME, int frame, rows * cols bytes of cell values
+ *   delta:    byte DELTA, int frame, int runsCount, runsCount * (int start, int length, byte value)
+ * Use DeltaFrameReader to rebuild any frame.
+ */
+public class DeltaFrameWriter implements AutoCloseable {
+    public static final int MAGIC = 0x50444C54; // "PDLT"
+    public static final int VERSION = 1;
+    public static final byte KEYFRAME = 'K';
+    public static final byte DELTA = 'D';
+
+    private final DataOutputStream out;
+    private final int rows;
+    private final int cols;
+    private final int[] rowData;
+    private final byte[] keyframeRow;
+
+    /**
+     * Creates the stream file and writes its header
+     *
+     * @param fileName File path and name
+     * @param rows     Rows count
+     * @param cols     Columns count
+     * @param minValue Minimal value in the data array
+     * @param maxValue Maximal value in the data array, should fit in a byte
+     */
+    public DeltaFrameWriter(String fileName, int rows, int cols, int minValue, int maxValue) throws IOException {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowData = new int[cols];
+        this.keyframeRow = new byte[cols];
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(rows);
+        out.writeInt(cols);
+        out.writeInt(minValue);
+        out.writeInt(maxValue);
+    }
+
+    /**
+     * Writes all cell values of a frame
+     *
+     * @param frame    Frame index
+     * @param cellData Source of the rows of pseudo 2D data
+     */
+    public void writeKeyframe(int frame, RowSource cellData) throws IOException {
+        out.writeByte(KEYFRAME);
+        out.writeInt(frame);
+        for (int row = 0; row < rows; row++) {
+            cellData.readRow(row, rowData);
+            for (int col = 0; col < cols; col++) {
+                keyframeRow[col] = (byte) rowData[col];
+            }
+            out.write(keyframeRow);
+        }
+    }
+
+    /**
+     * Writes the cells changed since the previous frame
+     *
+     * @param frame        Frame index
+     * @param changedCells 1D indices of the changed cells, each listed once, sorted in place
+     * @param count        Number of changed cells in the array
+     * @param cellValue    The new value of a cell by its 1D index
+     */
+    public void writeDelta(int frame, int[] changedCells, int count, IntUnaryOperator cellValue) throws IOException {
+        Arrays.sort(changedCells, 0, count);
+        // count the runs of consecutive cells having the same value first
+        int runsCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || !continuesRun(changedCells, i, cellValue)) {
+                runsCount++;
+            }
+        }
+
+        out.writeByte(DELTA);
+        out.writeInt(frame);
+        out.writeInt(runsCount);
+        int start = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || !continuesRun(changedCells, i, cellValue)) {
+                out.writeInt(changedCells[start]);
+                out.writeInt(i - start);
+                out.writeByte(cellValue.applyAsInt(changedCells[start]));
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the i-th changed cell extends the run of the previous one
+     */
+    private static boolean continuesRun(int[] cells, int i, IntUnaryOperator cellValue) {
+        return cells[i] == cells[i - 1] + 1
+                && cellValue.applyAsInt(cells[i]) == cellValue.applyAsInt(cells[i - 1]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * File: FrameExportPipeline.java
+ * Description: Writes PPM frames on background threads.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bounded producer/consumer stage that writes PPM frames on a pool of writer threads.
+ * A frame is snapshotted into a pooled buffer, so the simulation may go on
+ * while the frame is being encoded and written. When all buffers are in use,
+ * the producer waits until a writer releases one.
+ */
+public class FrameExportPipeline implements AutoCloseable {
+    private final int rows;
+    private final int cols;
+    private final int minValue;
+    private final int maxValue;
+    private final int upScaleFactor;
+    private final boolean binary;
+    private final BlockingQueue<int[]> freeBuffers; // snapshot buffers not used by any writer
+    private final ExecutorService writers;
+    private final AtomicReference<Exception> error = new AtomicReference<>(); // the first failure of a writer
+    private final int[] rowData; // a row being snapshotted
+
+    /**
+     * Starts the writer threads
+     *
+     * @param rows          Rows count
+     * @param cols          Columns count
+     * @param minValue      Minimal value in the data array
+     * @param maxValue      Maximal value in the data array
+     * @param upScaleFactor Zoom factor
+     * @param binary        Write binary (P6) files instead of ASCII (P3) ones
+     * @param writersCount  Number of writer threads
+     * @param capacity      Maximal number of frames waiting to be written
+     */
+    public FrameExportPipeline(int rows, int cols, int minValue, int maxValue, int upScaleFactor,
+                               boolean binary, int writersCount, int capacity) {
+        if (writersCount <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Writers count and capacity should be positive!");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.upScaleFactor = upScaleFactor;
+        this.binary = binary;
+        this.rowData = new int[cols];
+        this.freeBuffers = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            freeBuffers.add(new int[rows * cols]);
+        }
+        this.writers = Executors.newFixedThreadPool(writersCount, task -> {
+            Thread thread = new Thread(task, "frame-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Snapshots a frame and queues it for writing, waits while all buffers are in use.
+     * Should be called from a single producer thread
+     *
+     * @param fileName File path and name with *.PPM extension
+     * @param cellData Source of the rows of pseudo 2D data
+     * @throws IOException If writing of any previous frame has failed
+     * @throws RuntimeException If encoding of any previous frame has failed
+     */
+    public void submit(String fileName, RowSource cellData) throws IOException, InterruptedException {
+        rethrowError();
+        int[] buffer = freeBuffers.take();
+        for (int row = 0; row < rows; row++) {
+            cellData.readRow(row, rowData);
+            System.arraycopy(rowData, 0, buffer, row * cols, cols);
+        }
+        writers.execute(() -> {
+            try {
+                RowSource snapshot = (row, dst) -> System.arraycopy(buffer, row * cols, dst, 0, cols);
+                if (binary) {
+                    PPMExporter.writeBinaryFile(snapshot, rows, cols, fileName, minValue, maxValue, upScaleFactor);
+                } else {
+                    PPMExporter.writeFile(snapshot, rows, cols, fileName, minValue, maxValue, upScaleFactor);
+                }
+            } catch (IOException | RuntimeException e) {
+                error.compareAndSet(null, e);
+            } finally {
+                freeBuffers.add(buffer);
+            }
+        });
+    }
+
+    /**
+     * Waits until all queued frames are written and stops the writer threads
+     *
+     * @throws IOException If writing of any frame has failed, or the wait was interrupted
+     * @throws RuntimeException If encoding of any frame has failed
+     */
+    @Override
+    public void close() throws IOException {
+        writers.shutdown();
+        try {
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for the frame writers was interrupted!");
+        }
+        rethrowError();
+    }
+
+    private void rethrowError() throws IOException {
+        Exception e = error.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+    }
+}
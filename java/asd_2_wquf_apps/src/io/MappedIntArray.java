@@ -0,0 +1,139 @@
+/*
+ * File: MappedIntArray.java
+ * Description: A long-indexed array of integers in a memory-mapped file.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An array of integers kept off the heap in a file mapped into memory.
+ * A single mapping can not exceed 2 GB, so the file is mapped in chunks
+ * and the array may hold more than 2^31 elements.
+ * The content stays in the file, so a run may reopen it after a restart.
+ */
+public class MappedIntArray implements AutoCloseable {
+    private static final VarHandle ELEMENT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final int CHUNK_SHIFT = 28; // 2^28 elements, 1 GB per mapping
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final long length;
+    private final MappedByteBuffer[] chunks;
+    private final boolean reopened;
+
+    /**
+     * Maps a file, creates it if it does not exist.
+     * An existing file of the same length is reopened with its content,
+     * a file of any other length is cleared to zeros
+     *
+     * @param file   File path
+     * @param length Number of elements
+     * @throws IOException If the file can not be created or mapped
+     */
+    public MappedIntArray(Path file, long length) throws IOException {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Length should be positive!");
+        }
+        this.length = length;
+        long bytes = length * Integer.BYTES;
+        reopened = Files.exists(file) && Files.size(file) == bytes;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (!reopened) {
+                channel.truncate(0); // drop the stale content, the file grows back filled by zeros
+            }
+            int chunksCount = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+            chunks = new MappedByteBuffer[chunksCount];
+            for (int c = 0; c < chunksCount; c++) {
+                long position = ((long) c << CHUNK_SHIFT) * Integer.BYTES;
+                long size = Math.min(bytes - position, (1L << CHUNK_SHIFT) * Integer.BYTES);
+                // the mapping keeps the file open after the channel is closed
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                chunks[c].order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    /**
+     * Checks whether an existing file was reopened with its content
+     */
+    public boolean reopened() {
+        return reopened;
+    }
+
+    /**
+     * Getter for the number of elements.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Getter for the i-th element
+     */
+    public int get(long i) {
+        return chunks[(int) (i >>> CHUNK_SHIFT)].getInt((int) (i & CHUNK_MASK) * Integer.BYTES);
+    }
+
+    /**
+     * Setter for the i-th element
+     */
+    public void set(long i, int value) {
+        chunks[(int) (i >>> CHUNK_SHIFT)].putInt((int) (i & CHUNK_MASK) * Integer.BYTES, value);
+    }
+
+    /**
+     * Reads an element with the volatile memory semantics
+     */
+    public int getVolatile(long i) {
+        return (int) ELEMENT.getVolatile(chunks[(int) (i >>> CHUNK_SHIFT)], (int) (i & CHUNK_MASK) * Integer.BYTES);
+    }
+
+    /**
+     * Atomically sets an element if it equals the expected value, with the volatile memory semantics
+     * @return True if the value was set
+     */
+    public boolean compareAndSet(long i, int expect, int update) {
+        return ELEMENT.compareAndSet(chunks[(int) (i >>> CHUNK_SHIFT)], (int) (i & CHUNK_MASK) * Integer.BYTES,
+                expect, update);
+    }
+
+    /**
+     * Sets the same value to all elements
+     */
+    public void fill(int value) {
+        for (long i = 0; i < length; i++) {
+            set(i, value);
+        }
+    }
+
+    /**
+     * Writes the changed content to the file
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Writes the changed content to the file, the mapping is released by the garbage collector
+     */
+    @Override
+    public void close() {
+        force();
+    }
+}
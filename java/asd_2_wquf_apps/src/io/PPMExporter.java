@@ -12,6 +12,11 @@ package io;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A minimal graphics file format writer
@@ -31,9 +36,27 @@ public class PPMExporter {
      */
     public static void writeFile(int[] cellData, int rows, int cols, String fileName,
                                  int minValue, int maxValue, int upScaleFactor) throws IOException {
+        writeFile((row, buffer) -> System.arraycopy(cellData, row * cols, buffer, 0, cols),
+                rows, cols, fileName, minValue, maxValue, upScaleFactor);
+    }
+
+    /**
+     * Writes pseudo 2D data read row by row into the file
+     *
+     * @param cellData      Source of the rows of pseudo 2D data
+     * @param rows          Rows count
+     * @param cols          Columns count
+     * @param fileName      File path and name with *.PPM extension
+     * @param minValue      Minimal value in the data array
+     * @param maxValue      Maximal value in the data array
+     * @param upScaleFactor Zoom factor
+     */
+    public static void writeFile(RowSource cellData, int rows, int cols, String fileName,
+                                 int minValue, int maxValue, int upScaleFactor) throws IOException {
         // Upscale dimensions
         int upscaledRows = rows * upScaleFactor;
         int upscaledCols = cols * upScaleFactor;
+        int[] rowData = new int[cols];
 
         // create a FileWriter to write to the PPM file
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
@@ -47,13 +70,16 @@ public class PPMExporter {
             // per-pixel write the image data:
             // loop over upscaled cells
             for (int row = 0; row < upscaledRows; row++) {
+                // map upscaled pixel coordinates back to original grid coordinates
+                int origRow = row / upScaleFactor;
+                if (row % upScaleFactor == 0) {
+                    cellData.readRow(origRow, rowData);
+                }
                 for (int col = 0; col < upscaledCols; col++) {
-                    // map upscaled pixel coordinates back to original grid coordinates
-                    int origRow = row / upScaleFactor;
                     int origCol = col / upScaleFactor;
 
                     // extract the cell data value
-                    int value = cellData[origRow * cols + origCol];
+                    int value = rowData[origCol];
 
                     // normalize it to be in [0 ... 255]
                     int color = maxColorValue * (value - minValue) / (maxValue - minValue);
@@ -64,4 +90,59 @@ public class PPMExporter {
             }
         }
     }
+
+    /**
+     * Writes pseudo 2D data read row by row into the binary (P6) PPM file.
+     * The image content is the same as the one of writeFile(),
+     * but each upscaled row is encoded once and then written upScaleFactor times
+     *
+     * @param cellData      Source of the rows of pseudo 2D data
+     * @param rows          Rows count
+     * @param cols          Columns count
+     * @param fileName      File path and name with *.PPM extension
+     * @param minValue      Minimal value in the data array
+     * @param maxValue      Maximal value in the data array
+     * @param upScaleFactor Zoom factor
+     */
+    public static void writeBinaryFile(RowSource cellData, int rows, int cols, String fileName,
+                                       int minValue, int maxValue, int upScaleFactor) throws IOException {
+        // Upscale dimensions
+        int upscaledRows = rows * upScaleFactor;
+        int upscaledCols = cols * upScaleFactor;
+        int maxColorValue = 255;
+        int[] rowData = new int[cols];
+        ByteBuffer pixels = ByteBuffer.allocate(3 * upscaledCols); // reused for all rows
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // write the PPM header
+            String header = "P6\n" + upscaledCols + " " + upscaledRows + "\n" + maxColorValue + "\n";
+            writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+
+            byte[] rgb = pixels.array();
+            for (int row = 0; row < rows; row++) {
+                cellData.readRow(row, rowData);
+                // encode the upscaled row once
+                int pos = 0;
+                for (int col = 0; col < cols; col++) {
+                    // normalize the value to be in [0 ... 255]
+                    byte color = (byte) (maxColorValue * (rowData[col] - minValue) / (maxValue - minValue));
+                    for (int repeat = 0; repeat < 3 * upScaleFactor; repeat++) {
+                        rgb[pos++] = color;
+                    }
+                }
+                // and repeat it vertically
+                for (int repeat = 0; repeat < upScaleFactor; repeat++) {
+                    pixels.clear();
+                    writeFully(channel, pixels);
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
 }
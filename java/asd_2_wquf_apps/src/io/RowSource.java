@@ -0,0 +1,24 @@
+/*
+ * File: RowSource.java
+ * Description: A row-by-row reader of pseudo 2D array of integer data.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+/**
+ * A source of pseudo 2D data that is read one row at a time,
+ * so the whole array does not need to be copied
+ */
+@FunctionalInterface
+public interface RowSource {
+    /**
+     * Copies a row of data into a buffer
+     * @param row    Row index
+     * @param buffer Destination array of at least columns count length
+     */
+    void readRow(int row, int[] buffer);
+}
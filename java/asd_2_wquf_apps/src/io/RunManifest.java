@@ -0,0 +1,106 @@
+/*
+ * File: RunManifest.java
+ * Description: A description of a run kept next to its memory-mapped files,
+ * to decide whether a later run may resume from them.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * A Properties file of the key=value pairs describing the topology of a run, such as its resolution and lattice,
+ * and of its state: 'dirty' while the run may be changing its files, 'clean' once they are written completely.
+ * A file is replaced atomically and synced to the disk, so it is never read half-written.
+ * A run killed while dirty leaves its files in an unknown state, they should not be resumed.
+ */
+public class RunManifest {
+    private static final String STATE = "state";
+    private static final String DIRTY = "dirty";
+    private static final String CLEAN = "clean";
+
+    private final Path file;
+    private final Properties run;
+
+    /**
+     * Constructor for RunManifest.
+     * @param file The manifest file
+     * @param run The key=value pairs describing the current run
+     */
+    public RunManifest(Path file, Properties run) {
+        if (run.containsKey(STATE)) {
+            throw new IllegalArgumentException("Key '" + STATE + "' is reserved!");
+        }
+        this.file = file;
+        this.run = run;
+    }
+
+    /**
+     * Checks whether the files left by a previous run may be resumed by the current one
+     * @return Null if they may, otherwise the reason why they may not
+     * @throws IOException If the manifest exists but can not be read
+     */
+    public String resumeRefusal() throws IOException {
+        if (!Files.exists(file)) {
+            return "the previous run is not described";
+        }
+        Properties saved = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            saved.load(in);
+        }
+        for (String key : run.stringPropertyNames()) {
+            if (!run.getProperty(key).equals(saved.getProperty(key))) {
+                return "the previous run had " + key + " = " + saved.getProperty(key)
+                        + " instead of " + run.getProperty(key);
+            }
+        }
+        if (!CLEAN.equals(saved.getProperty(STATE))) {
+            return "the previous run did not stop cleanly";
+        }
+        return null;
+    }
+
+    /**
+     * Records the current run as changing its files, should be called before the first change
+     * @throws IOException If the manifest can not be written
+     */
+    public void markDirty() throws IOException {
+        write(DIRTY);
+    }
+
+    /**
+     * Records the files of the current run as complete, should be called after they are forced to the disk
+     * @throws IOException If the manifest can not be written
+     */
+    public void markClean() throws IOException {
+        write(CLEAN);
+    }
+
+    private void write(String state) throws IOException {
+        Properties content = new Properties();
+        content.putAll(run);
+        content.setProperty(STATE, state);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            content.store(out, null);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
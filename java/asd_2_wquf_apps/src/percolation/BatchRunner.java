@@ -0,0 +1,568 @@
+package percolation;
+
+import unionfind.UnionFindType;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A headless batch runner of percolation trials for a scheduler.
+ * A job is a set of key=value pairs, read from the Properties files and the arguments
+ * in the order given, so a later value overrides an earlier one:
+ *   res=N                 grid resolution, a cubic lattice has N layers of N x N cells (12)
+ *   trials=T              number of independent trials (1)
+ *   seed=S                seed of the first trial, the t-th trial is seeded by a value derived from it (random)
+ *   lattice=L             square, triangular, honeycomb or cubic (square)
+ *   periodic=true|false   wrap the side boundaries around (false)
+ *   mode=site|bond        open the cells or the bonds between them (site)
+ *   engine=E              solver: the PercolationSolver opens random cells until the grid percolates;
+ *                         newman_ziff: a NewmanZiff sweep opens all cells of a trial;
+ *                         hoshen_kopelman or strips: the HoshenKopelman or StripLabeller labels
+ *                         the prefixes of a random opening order, bisecting for the shortest percolating one;
+ *                         the engines other than the solver need a square non-periodic lattice of sites,
+ *                         without spanning and uf (solver)
+ *   uf=TYPE               union-find algorithm, as the -uf argument of Main (weighted_fast)
+ *   workers=W             threads to run the trials on, or the strips of each labelling with engine=strips (1)
+ *   spanning=true|false   go on after the percolation until a cluster touches all sides,
+ *                         and report the steps of the left-right and all-sides spanning,
+ *                         a left-right one winds around the x axis of a periodic lattice (false)
+ *   format=csv|jsonl      comma-separated values with a header, or a JSON object per line (csv)
+ *   output=FILE           result file, '-' for the standard output (-)
+ * Each trial opens random cells, or bonds, until the grid percolates; nothing is logged meanwhile,
+ * and a single line per trial is written and flushed as soon as it and all trials before it are done,
+ * so the output does not grow with the number of iterations, and a killed job keeps the finished trials.
+ * A failed trial is left out, the others go on, and the job fails once they are done.
+ * The clusters are counted with the top and the bottom sides joined, as the solver does,
+ * except for engine=hoshen_kopelman, which counts the clusters of the opened cells only.
+ * Usage: java -cp asd_2_wquf_apps.jar percolation.BatchRunner [job.properties ...] [key=value ...]
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class BatchRunner {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L; // spreads the seeds of successive trials
+    private static final Set<String> KEYS = Set.of("res", "trials", "seed", "lattice", "periodic", "mode",
+            "engine", "uf", "workers", "spanning", "format", "output");
+    private static final String[] COLUMNS = {"trial", "seed", "opened", "threshold", "clusters",
+            "largest_cluster", "left_right", "all_sides", "time_ms"};
+
+    /**
+     * Enum representing the format of the results.
+     */
+    public enum Format {
+        CSV,  // a header line, then the comma-separated values of each trial
+        JSONL // a JSON object per trial on each line
+    }
+
+    /**
+     * Enum representing the engine of the trials.
+     */
+    public enum Engine {
+        SOLVER,          // PercolationSolver
+        NEWMAN_ZIFF,     // NewmanZiff sweep
+        HOSHEN_KOPELMAN, // HoshenKopelman labeller
+        STRIPS           // StripLabeller
+    }
+
+    private final int res;
+    private final int trials;
+    private final long seed;
+    private final Lattice.Type latticeType;
+    private final boolean periodic;
+    private final PercolationSolver.Mode mode;
+    private final Engine engine;
+    private final UnionFindType connectivityType;
+    private final int workers;
+    private final boolean spanning;
+    private final Format format;
+    private final String output;
+
+    /**
+     * Constructor for BatchRunner, validates the whole job before any trial is run.
+     * @param job The key=value pairs of the job, the missing keys take the default values
+     */
+    public BatchRunner(Properties job) {
+        for (String key : job.stringPropertyNames()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown job key '" + key + "'!");
+            }
+        }
+        res = positive(job, "res", 12);
+        trials = positive(job, "trials", 1);
+        workers = positive(job, "workers", 1);
+        String seedValue = job.getProperty("seed");
+        try {
+            seed = (seedValue != null) ? Long.parseLong(seedValue.trim()) : System.nanoTime();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value of 'seed' should be an integer!");
+        }
+        latticeType = option(job, "lattice", Lattice.Type.SQUARE);
+        periodic = flag(job, "periodic");
+        mode = option(job, "mode", PercolationSolver.Mode.SITE);
+        engine = option(job, "engine", Engine.SOLVER);
+        connectivityType = option(job, "uf", UnionFindType.WEIGHTED_FAST);
+        spanning = flag(job, "spanning");
+        format = option(job, "format", Format.CSV);
+        output = job.getProperty("output", "-").trim();
+        if (mode == PercolationSolver.Mode.BOND && latticeType != Lattice.Type.SQUARE) {
+            throw new IllegalArgumentException("Bond mode requires a square lattice!");
+        }
+        if (spanning && periodic && res < 3) {
+            throw new IllegalArgumentException("Spanning on a periodic lattice requires res of at least 3!");
+        }
+        if (engine != Engine.SOLVER) {
+            String name = engine.name().toLowerCase(Locale.ROOT);
+            if (latticeType != Lattice.Type.SQUARE || periodic || mode != PercolationSolver.Mode.SITE) {
+                throw new IllegalArgumentException("Engine " + name
+                        + " requires a square non-periodic lattice in site mode!");
+            }
+            if (spanning || job.getProperty("uf") != null) {
+                throw new IllegalArgumentException("Keys 'spanning' and 'uf' apply to engine solver only!");
+            }
+        }
+    }
+
+    private static int positive(Properties job, String key, int defaultValue) {
+        String value = job.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Value of '" + key + "' should be a positive integer!");
+    }
+
+    private static boolean flag(Properties job, String key) {
+        String value = job.getProperty(key, "false").trim();
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Value of '" + key + "' should be true or false!");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private static <E extends Enum<E>> E option(Properties job, String key, E defaultValue) {
+        String value = job.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value of '" + key + "': " + value + "!");
+        }
+    }
+
+    /**
+     * Runs all trials of the job and writes their results to the output of the job
+     * @throws IOException If the output file can not be written
+     */
+    public void run() throws IOException {
+        if (output.equals("-")) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            run(out);
+            out.flush();
+        } else {
+            try (Writer out = new BufferedWriter(new FileWriter(output, StandardCharsets.UTF_8))) {
+                run(out);
+            }
+        }
+    }
+
+    /**
+     * Runs all trials of the job, each worker reuses its own grid and engine for all of its trials.
+     * A line per trial is written in the order of the trials, and flushed as soon as the trials before it are done.
+     * @param out Destination of the results
+     * @throws IOException If the destination can not be written
+     */
+    public void run(Writer out) throws IOException {
+        if (format == Format.CSV) {
+            out.write(String.join(",", COLUMNS));
+            out.write("\n");
+            out.flush();
+        }
+        ResultWriter results = new ResultWriter(out);
+        // the strips of a labelling run on the pool, so the trials run one after another
+        int tasksCount = (engine == Engine.STRIPS) ? 1 : Math.min(workers, trials);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(tasksCount);
+            for (int w = 0; w < tasksCount; w++) {
+                final int first = w;
+                tasks.add(() -> {
+                    runTrials(first, tasksCount, newEngine(pool), results);
+                    return null;
+                });
+            }
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Trials were interrupted!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Trial failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        results.checkFailures();
+    }
+
+    /**
+     * Runs every step-th trial starting from the first one
+     * @param first   Index of the first trial to run
+     * @param step    Distance between the indices of the trials to run
+     * @param engine  Engine of the worker, fills a trial of a given seed
+     * @param results Destination of the results
+     * @throws IOException If the results can not be written
+     */
+    private void runTrials(int first, int step, Consumer<Trial> engine, ResultWriter results) throws IOException {
+        for (int t = first; t < trials; t += step) {
+            long start = System.nanoTime();
+            Trial trial = new Trial();
+            trial.seed = seed + t * SEED_STEP;
+            try {
+                engine.accept(trial);
+            } catch (RuntimeException e) {
+                results.fail(t, e);
+                continue;
+            }
+            trial.nanos = System.nanoTime() - start;
+            results.finish(t, line(t, trial));
+        }
+    }
+
+    /**
+     * Creates the engine of a worker, with its own grid
+     * @param pool Threads of the strips of engine=strips
+     * @return The engine filling a trial of a given seed
+     */
+    private Consumer<Trial> newEngine(ForkJoinPool pool) {
+        switch (engine) {
+            case NEWMAN_ZIFF:
+                return this::sweepTrial;
+            case HOSHEN_KOPELMAN: {
+                Grid grid = new Grid(res, res);
+                int[] order = new int[grid.cellsCount()];
+                HoshenKopelman labeller = new HoshenKopelman(res, Grid.is(Grid.Status.CLOSED));
+                return trial -> bisectTrial(trial, grid, order, () -> {
+                    HoshenKopelman.Result result = labeller.label(grid::readRow, res);
+                    return new long[] {result.percolates() ? 1 : 0,
+                            result.clustersCount(), result.largestClusterSize()};
+                });
+            }
+            case STRIPS: {
+                Grid grid = new Grid(res, res);
+                int[] order = new int[grid.cellsCount()];
+                StripLabeller labeller = new StripLabeller(res, res, workers, pool);
+                return trial -> bisectTrial(trial, grid, order, () -> {
+                    labeller.label(grid);
+                    return new long[] {labeller.percolates() ? 1 : 0,
+                            labeller.clustersCount(), labeller.largestClusterSize()};
+                });
+            }
+            default:
+                return newSolverEngine();
+        }
+    }
+
+    private Consumer<Trial> newSolverEngine() {
+        Lattice lattice = Lattice.of(latticeType, res, periodic);
+        Grid grid = new Grid(lattice.rowsCount(), lattice.columnsCount());
+        PercolationSolver sol = new PercolationSolver(grid, lattice, connectivityType, mode,
+                false, false, PercolationSolver.FillMode.RESCAN);
+        if (spanning) {
+            sol.trackSpanning();
+        }
+        boolean bond = mode == PercolationSolver.Mode.BOND;
+        int maxSteps = bond ? sol.bondsCount() : grid.cellsCount();
+        return trial -> {
+            sol.reset();
+            sol.setSeed(trial.seed);
+            // the solver keeps the counts, so the loop only opens and checks
+            boolean percolates = sol.percolatesTotally();
+            int steps = bond ? sol.openedBondsCount() : sol.openedCellsCount();
+            trial.notPercolated();
+            while (!(percolates && (!spanning || sol.spans(PercolationSolver.Spanning.ALL_SIDES)))
+                    && steps < maxSteps) {
+                sol.openRandom(true);
+                steps++;
+                if (!percolates && sol.percolatesTotally()) {
+                    percolates = true;
+                    trial.opened = steps;
+                    trial.threshold = sol.openedFraction();
+                    trial.clusters = sol.tracksClusters() ? sol.clustersCount() : -1;
+                    trial.largestCluster = sol.tracksClusters() ? sol.largestClusterSize() : -1;
+                }
+            }
+            trial.leftRight = spanning ? sol.spanningStep(PercolationSolver.Spanning.LEFT_RIGHT) : -1;
+            trial.allSides = spanning ? sol.spanningStep(PercolationSolver.Spanning.ALL_SIDES) : -1;
+        };
+    }
+
+    /**
+     * Sweeps all cells of a trial, the clusters are not counted by the sweep
+     */
+    private void sweepTrial(Trial trial) {
+        NewmanZiff sweep = new NewmanZiff(res, res, 1, trial.seed);
+        int n = sweep.cellsCount();
+        trial.notPercolated();
+        for (int k = 1; k <= n; k++) {
+            if (sweep.percolationProbability(k) > 0) {
+                trial.opened = k;
+                trial.threshold = (double) k / n;
+                trial.largestCluster = (int) Math.round(sweep.largestClusterFraction(k) * n);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Finds the shortest percolating prefix of a random opening order by bisection,
+     * a grid opened by a prefix percolates whenever it does by a shorter one
+     * @param trial    The trial to fill
+     * @param grid     The grid to open the prefixes on
+     * @param order    Opening order of the cells, overwritten
+     * @param labeller Labels the grid: percolates (0 or 1), clusters count and largest cluster size
+     */
+    private static void bisectTrial(Trial trial, Grid grid, int[] order, Supplier<long[]> labeller) {
+        int n = order.length;
+        Random rnd = new Random(trial.seed);
+        // Fisher-Yates shuffle of the opening order, as the sweep does
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        grid.reset();
+        trial.notPercolated();
+        int opened = openPrefix(grid, order, 0, n);
+        long[] result = labeller.get();
+        if (result[0] == 0) {
+            return; // a single row never percolates
+        }
+        // the prefix of hi cells percolates and is labelled by the result, the one of lo - 1 cells does not
+        int lo = 1;
+        int hi = n;
+        while (lo < hi) {
+            int k = (lo + hi) >>> 1;
+            opened = openPrefix(grid, order, opened, k);
+            long[] probe = labeller.get();
+            if (probe[0] != 0) {
+                hi = k;
+                result = probe;
+            } else {
+                lo = k + 1;
+            }
+        }
+        trial.opened = hi;
+        trial.threshold = (double) hi / n;
+        trial.clusters = (int) result[1];
+        trial.largestCluster = (int) result[2];
+    }
+
+    /**
+     * Opens or closes the cells of an opening order, so that only its prefix of a given length is opened
+     * @param grid   The grid of the cells
+     * @param order  Opening order of the cells
+     * @param opened Length of the prefix opened now
+     * @param length Length of the prefix to open
+     * @return The length of the opened prefix
+     */
+    private static int openPrefix(Grid grid, int[] order, int opened, int length) {
+        int openedValue = Grid.is(Grid.Status.OPENED);
+        int closedValue = Grid.is(Grid.Status.CLOSED);
+        for (; opened < length; opened++) {
+            grid.set(order[opened], openedValue);
+        }
+        for (; opened > length; opened--) {
+            grid.set(order[opened - 1], closedValue);
+        }
+        return opened;
+    }
+
+    /**
+     * Formats the result of a trial as a line of the output
+     * @param t     Index of the trial
+     * @param trial The outcome of the trial
+     * @return The line, with the line separator
+     */
+    private String line(int t, Trial trial) {
+        String[] values = {
+                Integer.toString(t),
+                Long.toString(trial.seed),
+                Integer.toString(trial.opened),
+                Double.isNaN(trial.threshold) ? "" : Double.toString(trial.threshold),
+                Integer.toString(trial.clusters),
+                Integer.toString(trial.largestCluster),
+                Integer.toString(trial.leftRight),
+                Integer.toString(trial.allSides),
+                Double.toString(trial.nanos / 1e6)
+        };
+        StringBuilder line = new StringBuilder();
+        if (format == Format.CSV) {
+            line.append(String.join(",", values));
+        } else {
+            line.append('{');
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append('"').append(COLUMNS[i]).append("\":").append(values[i].isEmpty() ? "null" : values[i]);
+            }
+            line.append('}');
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * The lines of the finished trials, written in the order of the trials:
+     * a line waits only for the trials before it which are still running.
+     */
+    private final class ResultWriter {
+        private final Writer out;
+        private final String[] pending; // lines of the finished trials waiting for the earlier ones, "" if failed
+        private int next; // index of the first trial not written yet
+        private int failures;
+        private int firstFailed = -1; // index of the earliest failed trial
+        private String firstFailure;
+
+        ResultWriter(Writer out) {
+            this.out = out;
+            pending = new String[trials];
+        }
+
+        /**
+         * Writes the line of a finished trial, and of the finished trials after it, once the earlier ones are written
+         * @throws IOException If the destination can not be written
+         */
+        synchronized void finish(int t, String line) throws IOException {
+            pending[t] = line;
+            int written = next;
+            while (next < trials && pending[next] != null) {
+                out.write(pending[next]);
+                pending[next] = null;
+                next++;
+            }
+            if (next > written) {
+                out.flush();
+            }
+        }
+
+        /**
+         * Leaves out a failed trial, so the later ones are still written
+         * @throws IOException If the destination can not be written
+         */
+        synchronized void fail(int t, RuntimeException e) throws IOException {
+            failures++;
+            if (firstFailed < 0 || t < firstFailed) {
+                firstFailed = t;
+                firstFailure = e.getMessage();
+            }
+            finish(t, "");
+        }
+
+        /**
+         * Reports the failed trials, if any
+         */
+        synchronized void checkFailures() {
+            if (failures > 0) {
+                throw new IllegalStateException("Trial " + firstFailed + " failed: " + firstFailure
+                        + (failures > 1 ? " (and " + (failures - 1) + " more trials)" : ""));
+            }
+        }
+    }
+
+    /**
+     * Collects a job from the arguments: a key=value argument sets a single key,
+     * any other argument is a Properties file of keys
+     * @param args Command-line arguments, in the order of precedence from the lowest
+     * @return The key=value pairs of the job
+     * @throws IOException If a Properties file can not be read
+     */
+    public static Properties parseJob(String[] args) throws IOException {
+        Properties job = new Properties();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                job.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+            } else {
+                Properties file = new Properties();
+                try (Reader in = new FileReader(arg, StandardCharsets.UTF_8)) {
+                    file.load(in);
+                }
+                for (String key : file.stringPropertyNames()) {
+                    job.setProperty(key, file.getProperty(key));
+                }
+            }
+        }
+        return job;
+    }
+
+    /**
+     * The outcome of a single trial.
+     */
+    private static class Trial {
+        long seed;
+        int opened; // cells, or bonds, opened when the grid percolated
+        double threshold; // fraction of the opened cells, or bonds, when the grid percolated
+        int clusters; // clusters when the grid percolated, -1 unless the union-find is a weighted one
+        int largestCluster;
+        int leftRight; // opened cells, or bonds, when a cluster spanned from left to right
+        int allSides;
+        long nanos;
+
+        /**
+         * Records a trial which has not percolated, the engine overwrites the values it has found
+         */
+        void notPercolated() {
+            opened = -1;
+            threshold = Double.NaN;
+            clusters = -1;
+            largestCluster = -1;
+            leftRight = -1;
+            allSides = -1;
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            BatchRunner runner = new BatchRunner(parseJob(args));
+            runner.run();
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package percolation;
+
+/**
+ * A storage backend of the cell values of a Grid.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public interface CellStorage {
+    /**
+     * Getter for the number of stored cells.
+     */
+    int length();
+
+    /**
+     * Getter for the cell value at the specified 1D index.
+     * @param id1 The 1D index of the cell
+     * @return The value of the cell
+     */
+    int get(int id1);
+
+    /**
+     * Setter for the cell value at the specified 1D index.
+     * @param id1 The 1D index of the cell
+     * @param value The value to set for the cell
+     */
+    void set(int id1, int value);
+
+    /**
+     * Sets the same value to all cells.
+     * @param value The value to set for the cells
+     */
+    void fill(int value);
+
+    /**
+     * Counts the number of cells with a specific data value.
+     * @param value The data value to find
+     * @param operation The comparison operator: cell[i] 'op' value
+     * @return The count of cells with the specified value
+     */
+    int count(int value, Comparison.Operator operation);
+
+    /**
+     * Copies a range of cell values into an array.
+     * @param from The 1D index of the first cell to copy
+     * @param dst The destination array
+     * @param dstFrom The first position to write to in the destination array
+     * @param length The number of cells to copy
+     */
+    void read(int from, int[] dst, int dstFrom, int length);
+
+    /**
+     * Reads the cell value with the volatile memory semantics.
+     * @param id1 The 1D index of the cell
+     * @return The value of the cell
+     */
+    int getVolatile(int id1);
+
+    /**
+     * Atomically sets the cell value if it equals the expected one,
+     * with the volatile memory semantics.
+     * @param id1 The 1D index of the cell
+     * @param expect The expected value of the cell
+     * @param update The value to set for the cell
+     * @return True if the value was set, false if the cell value differed from the expected one
+     */
+    boolean compareAndSet(int id1, int expect, int update);
+}
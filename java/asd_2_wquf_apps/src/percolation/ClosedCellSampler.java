@@ -0,0 +1,119 @@
+package percolation;
+
+import java.util.Random;
+
+/**
+ * An index of the closed cells of a Grid that allows to draw
+ * a uniformly distributed random closed cell in a constant time.
+ * The closed cells are kept in the first 'count' slots of a permutation array,
+ * and an opened cell is swapped with the last closed one.
+ * The two arrays are kept in any CellStorage, on the heap unless a StorageFactory is given.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class ClosedCellSampler {
+    private final CellStorage cells; // permutation of the 1D cell indices, closed ones go first
+    private final CellStorage position; // position[id] is the slot of id-th cell in the 'cells' array
+    private int count; // number of closed cells
+
+    /**
+     * Constructor for ClosedCellSampler.
+     * @param grid The grid to index the closed cells of
+     */
+    public ClosedCellSampler(Grid grid) {
+        this(grid, StorageFactory.HEAP, "closed");
+    }
+
+    /**
+     * Constructor for ClosedCellSampler keeping its arrays in the given storages.
+     * @param grid The grid to index the closed cells of
+     * @param storage The source of the two arrays of the index
+     * @param name The prefix of the names of the arrays
+     */
+    public ClosedCellSampler(Grid grid, StorageFactory storage, String name) {
+        this(grid.cellsCount(), storage, name);
+        for (int i = 0; i < grid.cellsCount(); i++) {
+            if (grid.get(i) != Grid.is(Grid.Status.CLOSED)) {
+                remove(i);
+            }
+        }
+    }
+
+    /**
+     * Constructor for ClosedCellSampler of the items not bound to a Grid, such as the bonds between cells.
+     * @param length The number of items, all of them are closed initially
+     */
+    public ClosedCellSampler(int length) {
+        this(length, StorageFactory.HEAP, "closed");
+    }
+
+    /**
+     * Constructor for ClosedCellSampler of the items not bound to a Grid, keeping its arrays in the given storages.
+     * @param length The number of items, all of them are closed initially
+     * @param storage The source of the two arrays of the index
+     * @param name The prefix of the names of the arrays
+     */
+    public ClosedCellSampler(int length, StorageFactory storage, String name) {
+        cells = storage.create(name + ".cells", length);
+        position = storage.create(name + ".position", length);
+        reset();
+    }
+
+    /**
+     * Restores the initial state of the index, all cells become closed.
+     */
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, i);
+            position.set(i, i);
+        }
+        count = cells.length();
+    }
+
+    /**
+     * Getter for the number of closed cells.
+     */
+    public int closedCount() {
+        return count;
+    }
+
+    /**
+     * Checks whether the cell is still in the index of closed cells
+     * @param id1 1D index of a cell
+     * @return True if the cell is closed, false otherwise
+     */
+    public boolean contains(int id1) {
+        return position.get(id1) < count;
+    }
+
+    /**
+     * Draws a random closed cell, each closed cell is equally likely
+     * @param rnd A random number generator
+     * @return 1D index of the selected cell
+     */
+    public int sample(Random rnd) {
+        if (count == 0) {
+            throw new IllegalStateException("No closed cells left!");
+        }
+        return cells.get(rnd.nextInt(count));
+    }
+
+    /**
+     * Removes a cell from the index of closed cells, does nothing if it is already removed
+     * @param id1 1D index of a cell
+     */
+    public void remove(int id1) {
+        int slot = position.get(id1);
+        if (slot >= count) {
+            return;
+        }
+        // move the last closed cell into the freed slot
+        int last = cells.get(--count);
+        cells.set(slot, last);
+        position.set(last, slot);
+        cells.set(count, id1);
+        position.set(id1, count);
+    }
+}
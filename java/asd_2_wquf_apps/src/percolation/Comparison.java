@@ -24,4 +24,21 @@ public class Comparison {
         GREATER_THAN_OR_EQUAL,
         LESS_THAN_OR_EQUAL
     }
+
+    /**
+     * Compares two values.
+     * @param item The value to compare
+     * @param value The value to compare with
+     * @param operation The comparison operator: item 'op' value
+     * @return The result of the comparison
+     */
+    public static boolean test(int item, int value, Operator operation) {
+        return switch (operation) {
+            case EQUALS -> item == value;
+            case GREATER_THAN -> item > value;
+            case LESS_THAN -> item < value;
+            case GREATER_THAN_OR_EQUAL -> item >= value;
+            case LESS_THAN_OR_EQUAL -> item <= value;
+        };
+    }
 }
@@ -1,11 +1,9 @@
 package percolation;
 
-import utils.Utils;
-
 import java.util.stream.IntStream;
 
 /**
- * A wrapper over 1D array of integers to mimic a 2D grid-like array of cells
+ * A wrapper over 1D storage of integer values to mimic a 2D grid-like array of cells
  * which may be either closed, opened, or filled by the fluid.
  * Authors:
  *   - Ilya Tsivilskiy
@@ -15,7 +13,10 @@ import java.util.stream.IntStream;
 public class Grid {
     private final int nrows;
     private final int ncols;
-    private int[] data;
+    private final CellStorage data;
+    private int[] changedCells; // journal of the cells changed since the last clearChanges(), null if not tracked
+    private long[] changedMarks; // bitset of the cells in the journal
+    private int changesCount;
 
     /**
      * Enum representing the status of a cell.
@@ -26,12 +27,30 @@ public class Grid {
         OPENED_AND_FILLED
     }
 
+    /**
+     * Enum representing the storage backend of the cell values.
+     */
+    public enum Storage {
+        INT,    // 32 bits per cell, any integer values
+        PACKED  // 2 bits per cell, values in [0, 3]
+    }
+
     /**
      * Constructor for Grid.
      * @param nRows Vertical resolution, a number of cells in each row
      * @param nCols Horizontal resolution, a number of cells in each column
      */
     public Grid(int nRows, int nCols) {
+        this(nRows, nCols, Storage.INT);
+    }
+
+    /**
+     * Constructor for Grid.
+     * @param nRows Vertical resolution, a number of cells in each row
+     * @param nCols Horizontal resolution, a number of cells in each column
+     * @param storage The storage backend of the cell values
+     */
+    public Grid(int nRows, int nCols, Storage storage) {
         nrows = nRows;
         ncols = nCols;
 
@@ -39,7 +58,105 @@ public class Grid {
             throw new IllegalArgumentException("Grid resolution should be positive!");
         }
 
-        data = new int[this.cellsCount()];
+        data = switch (storage) {
+            case INT -> new IntCellStorage(this.cellsCount());
+            case PACKED -> new PackedCellStorage(this.cellsCount());
+        };
+    }
+
+    /**
+     * Constructor for Grid over a storage backend created by the caller, such as MappedCellStorage.
+     * The current cell values of the storage are kept.
+     * @param nRows Vertical resolution, a number of cells in each row
+     * @param nCols Horizontal resolution, a number of cells in each column
+     * @param storage The storage of nRows * nCols cells
+     */
+    public Grid(int nRows, int nCols, CellStorage storage) {
+        nrows = nRows;
+        ncols = nCols;
+
+        if (nrows <= 0 || ncols <= 0) {
+            throw new IllegalArgumentException("Grid resolution should be positive!");
+        }
+        if (storage.length() != cellsCount()) {
+            throw new IllegalArgumentException("Storage length should be equal to cells count!");
+        }
+
+        data = storage;
+    }
+
+    /**
+     * Restores the initial state of the grid, all cells become closed.
+     */
+    public void reset() {
+        fill(is(Status.CLOSED));
+    }
+
+    /**
+     * Sets the same value to all cells.
+     * @param value The value to set for the cells
+     */
+    public void fill(int value) {
+        data.fill(value);
+        if (changedCells != null) {
+            for (int i = 0; i < cellsCount(); i++) {
+                recordChange(i);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables recording of the cells whose value changes.
+     * @param enable True to start recording, false to stop and forget the recorded cells
+     */
+    public void trackChanges(boolean enable) {
+        if (enable && changedCells == null) {
+            changedCells = new int[cellsCount()];
+            changedMarks = new long[(cellsCount() + Long.SIZE - 1) / Long.SIZE];
+            changesCount = 0;
+        } else if (!enable) {
+            changedCells = null;
+            changedMarks = null;
+            changesCount = 0;
+        }
+    }
+
+    /**
+     * Getter for the number of cells changed since the last clearChanges().
+     */
+    public int changesCount() {
+        return changesCount;
+    }
+
+    /**
+     * Getter for the journal of changed cells, its first changesCount() entries are
+     * the 1D indices of the cells changed since the last clearChanges(), each listed once.
+     * The array is reused, it is valid until the next change of the grid.
+     */
+    public int[] changedCells() {
+        return changedCells;
+    }
+
+    /**
+     * Forgets the recorded changes, costs the number of recorded cells.
+     */
+    public void clearChanges() {
+        for (int i = 0; i < changesCount; i++) {
+            changedMarks[changedCells[i] / Long.SIZE] = 0;
+        }
+        changesCount = 0;
+    }
+
+    /**
+     * Adds a cell to the journal of changes, unless it is already there.
+     * @param id1 The 1D index of the cell
+     */
+    private synchronized void recordChange(int id1) {
+        long bit = 1L << (id1 % Long.SIZE);
+        if ((changedMarks[id1 / Long.SIZE] & bit) == 0) {
+            changedMarks[id1 / Long.SIZE] |= bit;
+            changedCells[changesCount++] = id1;
+        }
     }
 
     /**
@@ -78,9 +195,28 @@ public class Grid {
 
     /**
      * Getter for the raw data array.
+     * It is the array backing the INT storage, but a full copy for the other storages,
+     * use readRow() to stream the cell values without copying the whole grid.
      */
     public int[] rawData() {
-        return data;
+        if (data instanceof IntCellStorage) {
+            return ((IntCellStorage) data).rawData();
+        }
+        int[] copy = new int[cellsCount()];
+        data.read(0, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * Copies the cell values of a row into a buffer.
+     * @param row The row to copy
+     * @param buffer The destination array of at least columnsCount() length
+     */
+    public void readRow(int row, int[] buffer) {
+        if (row < 0 || row >= nrows) {
+            throw new IllegalArgumentException("Row index out of range!");
+        }
+        data.read(row * ncols, buffer, 0, ncols);
     }
 
     /**
@@ -117,8 +253,7 @@ public class Grid {
      * @return true if the cell is contained in the grid, false otherwise
      */
     public boolean containsCell(int row, int col) {
-        return Utils.inRange(row, 0, rowsCount() - 1) &&
-                Utils.inRange(col, 0, columnsCount() - 1);
+        return row >= 0 && row < nrows && col >= 0 && col < ncols;
     }
 
     /**
@@ -128,19 +263,7 @@ public class Grid {
      * @return The count of cells with the specified value
      */
     public int countOfCellsWithValue(int value, Comparison.Operator operation) {
-        return (int) IntStream.of(data)
-                .parallel()
-                .filter(item -> {
-                    return switch (operation) {
-                        case EQUALS -> item == value;
-                        case GREATER_THAN -> item > value;
-                        case LESS_THAN -> item < value;
-                        case GREATER_THAN_OR_EQUAL -> item >= value;
-                        case LESS_THAN_OR_EQUAL -> item <= value;
-                        default -> false;
-                    };
-                })
-                .count();
+        return data.count(value, operation);
     }
 
     /**
@@ -150,18 +273,9 @@ public class Grid {
      * @return An array of indices of cells with the specified value
      */
     public int[] cellsWithValue(int value, Comparison.Operator operation) {
-        return IntStream.range(0, data.length)
+        return IntStream.range(0, data.length())
                 .parallel()
-                .filter(id -> {
-                    return switch (operation) {
-                        case EQUALS -> data[id] == value;
-                        case GREATER_THAN -> data[id] > value;
-                        case LESS_THAN -> data[id] < value;
-                        case GREATER_THAN_OR_EQUAL -> data[id] >= value;
-                        case LESS_THAN_OR_EQUAL -> data[id] <= value;
-                        default -> false;
-                    };
-                })
+                .filter(id -> Comparison.test(data.get(id), value, operation))
                 .toArray();
     }
 
@@ -184,7 +298,7 @@ public class Grid {
         for (int ir = 0; ir < rowsCount(); ir++) {
             for (int ic = 0; ic < columnsCount(); ic++) {
                 for (int repeat = 0; repeat < 2; repeat++) {
-                    sb.append(pal[this.data[ir * columnsCount() + ic]]);
+                    sb.append(pal[this.data.get(ir * columnsCount() + ic)]);
                 }
             }
             sb.append(System.lineSeparator());
@@ -198,7 +312,7 @@ public class Grid {
      * @return The value of the cell at the specified index
      */
     public int get(int id1) {
-        return data[id1];
+        return data.get(id1);
     }
 
     /**
@@ -207,7 +321,36 @@ public class Grid {
      * @param value The value to set for the cell
      */
     public void set(int id1, int value) {
-        data[id1] = value;
+        if (changedCells != null && data.get(id1) != value) {
+            recordChange(id1);
+        }
+        data.set(id1, value);
+    }
+
+    /**
+     * Reads the cell value with the volatile memory semantics, for the concurrent updates of the grid.
+     * @param id1 The 1D index of the cell
+     * @return The value of the cell at the specified index
+     */
+    public int getVolatile(int id1) {
+        return data.getVolatile(id1);
+    }
+
+    /**
+     * Atomically sets the cell value if it equals the expected one, for the concurrent updates of the grid.
+     * @param id1 The 1D index of the cell
+     * @param expect The expected value of the cell
+     * @param update The value to set for the cell
+     * @return True if the value was set, false if the cell value differed from the expected one
+     */
+    public boolean compareAndSet(int id1, int expect, int update) {
+        if (data.compareAndSet(id1, expect, update)) {
+            if (changedCells != null && expect != update) {
+                recordChange(id1);
+            }
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -217,7 +360,7 @@ public class Grid {
      * @return The value of the cell at the specified indices
      */
     public int get(int row, int col) {
-        return data[i1(row, col)];
+        return data.get(i1(row, col));
     }
 
     /**
@@ -227,6 +370,6 @@ public class Grid {
      * @param value The value to set for the cell
      */
     public void set(int row, int col, int value) {
-        data[i1(row, col)] = value;
+        set(i1(row, col), value);
     }
 }
@@ -0,0 +1,318 @@
+package percolation;
+
+import io.RowSource;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A row-streaming Hoshen-Kopelman labeller of a static grid.
+ * Only two rows of labels and an equivalence table of the clusters touching them
+ * are kept, so the memory does not depend on the rows count.
+ * After each row the table is compacted: the clusters not reaching the new row are
+ * finished and counted, the rest are renumbered from zero.
+ * Usage: java -cp asd_2_wquf_apps.jar percolation.HoshenKopelman medium.raw ROWS COLS
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class HoshenKopelman {
+
+    /**
+     * A receiver of the labels of each row, -1 for the closed cells.
+     * A label stays the same for a cluster while the rows are read,
+     * and when two clusters merge the smaller label is kept,
+     * so the cells of different labels may still turn out to be connected by the later rows.
+     */
+    @FunctionalInterface
+    public interface LabelSink {
+        void acceptRow(int row, long[] labels);
+    }
+
+    private final int ncols;
+    private final int closedValue;
+    private final int[] cells; // values of the current row
+    private int[] prevLabels; // table indices of the cells of the previous row, -1 if closed
+    private int[] curLabels; // table indices of the cells of the current row, -1 if closed
+    private final long[] labelsOut; // labels passed to the sink
+
+    // the equivalence table: the clusters of the previous row, then the ones started by the current row
+    private final int[] parent;
+    private long[] size; // opened cells of a cluster, valid for the roots only
+    private boolean[] top; // the cluster touches the top side, valid for the roots only
+    private long[] label; // the label of a cluster, valid for the roots only
+    private final int[] remap; // compacted index of a root, -1 if the cluster does not reach the current row
+    // the compacted table of the clusters reaching the current row
+    private long[] nextSize;
+    private boolean[] nextTop;
+    private long[] nextLabel;
+
+    /**
+     * Constructor for HoshenKopelman.
+     * @param nCols       Horizontal resolution, a number of cells in each row
+     * @param closedValue The value of the closed cells, any other value is an opened cell
+     */
+    public HoshenKopelman(int nCols, int closedValue) {
+        if (nCols <= 0) {
+            throw new IllegalArgumentException("Columns count should be positive!");
+        }
+        this.ncols = nCols;
+        this.closedValue = closedValue;
+        cells = new int[nCols];
+        prevLabels = new int[nCols];
+        curLabels = new int[nCols];
+        labelsOut = new long[nCols];
+        // each row holds at most (nCols + 1) / 2 separate runs of the opened cells
+        int capacity = nCols + 1;
+        parent = new int[capacity];
+        size = new long[capacity];
+        top = new boolean[capacity];
+        label = new long[capacity];
+        remap = new int[capacity];
+        nextSize = new long[capacity];
+        nextTop = new boolean[capacity];
+        nextLabel = new long[capacity];
+    }
+
+    /**
+     * Labels the clusters of a grid
+     * @param rows  Source of the rows, read once in increasing order
+     * @param nRows Vertical resolution, a number of cells in each column
+     * @return The percolation status and the cluster counts
+     */
+    public Result label(RowSource rows, int nRows) {
+        return label(rows, nRows, null);
+    }
+
+    /**
+     * Labels the clusters of a grid
+     * @param rows  Source of the rows, read once in increasing order
+     * @param nRows Vertical resolution, a number of cells in each column
+     * @param sink  Receiver of the labels of each row, may be null
+     * @return The percolation status and the cluster counts
+     */
+    public Result label(RowSource rows, int nRows, LabelSink sink) {
+        if (nRows <= 0) {
+            throw new IllegalArgumentException("Rows count should be positive!");
+        }
+        Arrays.fill(prevLabels, -1);
+        int prevCount = 0; // clusters reaching the previous row
+        long nextId = 0; // label of the next new cluster
+        long clustersCount = 0;
+        long largestSize = 0;
+        long openedCount = 0;
+        boolean percolates = false;
+
+        for (int row = 0; row < nRows; row++) {
+            rows.readRow(row, cells);
+            int count = prevCount;
+            for (int i = 0; i < prevCount; i++) {
+                parent[i] = i;
+            }
+            for (int col = 0; col < ncols; col++) {
+                if (cells[col] == closedValue) {
+                    curLabels[col] = -1;
+                    continue;
+                }
+                openedCount++;
+                int up = prevLabels[col];
+                int left = (col > 0) ? curLabels[col - 1] : -1;
+                int root;
+                if (up < 0 && left < 0) {
+                    root = count++;
+                    parent[root] = root;
+                    size[root] = 0;
+                    top[root] = (row == 0);
+                    label[root] = nextId++;
+                } else if (up < 0) {
+                    root = find(left);
+                } else if (left < 0) {
+                    root = find(up);
+                } else {
+                    root = union(up, left);
+                }
+                size[root]++;
+                curLabels[col] = root;
+            }
+
+            // compact the clusters reaching the current row
+            Arrays.fill(remap, 0, count, -1);
+            int nextCount = 0;
+            for (int col = 0; col < ncols; col++) {
+                if (curLabels[col] < 0) {
+                    continue;
+                }
+                int root = find(curLabels[col]);
+                if (remap[root] < 0) {
+                    remap[root] = nextCount;
+                    nextSize[nextCount] = size[root];
+                    nextTop[nextCount] = top[root];
+                    nextLabel[nextCount] = label[root];
+                    nextCount++;
+                }
+                curLabels[col] = remap[root];
+            }
+            // the clusters of the previous row not reaching the current one are finished
+            for (int i = 0; i < prevCount; i++) {
+                if (parent[i] == i && remap[i] < 0) {
+                    clustersCount++;
+                    largestSize = Math.max(largestSize, size[i]);
+                }
+            }
+
+            long[] sizeSwap = size;
+            size = nextSize;
+            nextSize = sizeSwap;
+            boolean[] topSwap = top;
+            top = nextTop;
+            nextTop = topSwap;
+            long[] labelSwap = label;
+            label = nextLabel;
+            nextLabel = labelSwap;
+            int[] labelsSwap = prevLabels;
+            prevLabels = curLabels;
+            curLabels = labelsSwap;
+            prevCount = nextCount;
+
+            if (sink != null) {
+                for (int col = 0; col < ncols; col++) {
+                    labelsOut[col] = (prevLabels[col] < 0) ? -1 : label[prevLabels[col]];
+                }
+                sink.acceptRow(row, labelsOut);
+            }
+        }
+
+        // the clusters reaching the last row are finished, the ones touching the top side span the grid;
+        // a single row never percolates, as the solver joins it to the top node only
+        for (int i = 0; i < prevCount; i++) {
+            clustersCount++;
+            largestSize = Math.max(largestSize, size[i]);
+            percolates |= nRows > 1 && top[i];
+        }
+        return new Result(percolates, clustersCount, largestSize, openedCount);
+    }
+
+    private int find(int i) {
+        while (i != parent[i]) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Merges two clusters, the root of the smaller label becomes the root of both
+     * @return The root of the merged cluster
+     */
+    private int union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return rootP;
+        }
+        if (label[rootQ] < label[rootP]) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+        }
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        top[rootP] |= top[rootQ];
+        return rootP;
+    }
+
+    /**
+     * Labels the clusters of a grid stored in a raw file, one byte per cell row by row,
+     * 0 for a closed cell and any other value for an opened one
+     * @param fileName File path and name
+     * @param nRows    Vertical resolution, a number of cells in each column
+     * @param nCols    Horizontal resolution, a number of cells in each row
+     * @return The percolation status and the cluster counts
+     * @throws IOException If the file is shorter than the grid
+     */
+    public static Result labelFile(String fileName, int nRows, int nCols) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16))) {
+            byte[] bytes = new byte[nCols];
+            RowSource rows = (row, buffer) -> {
+                try {
+                    in.readFully(bytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                for (int col = 0; col < nCols; col++) {
+                    buffer[col] = bytes[col];
+                }
+            };
+            return new HoshenKopelman(nCols, 0).label(rows, nRows);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The outcome of a labelling.
+     */
+    public static class Result {
+        private final boolean percolates;
+        private final long clustersCount;
+        private final long largestClusterSize;
+        private final long openedCellsCount;
+
+        public Result(boolean percolates, long clustersCount, long largestClusterSize, long openedCellsCount) {
+            this.percolates = percolates;
+            this.clustersCount = clustersCount;
+            this.largestClusterSize = largestClusterSize;
+            this.openedCellsCount = openedCellsCount;
+        }
+
+        /**
+         * Checks whether a cluster touches both the top and the bottom side, never true for a single row
+         */
+        public boolean percolates() {
+            return percolates;
+        }
+
+        /**
+         * Getter for the number of clusters of the opened cells.
+         */
+        public long clustersCount() {
+            return clustersCount;
+        }
+
+        /**
+         * Getter for the number of cells in the largest cluster.
+         */
+        public long largestClusterSize() {
+            return largestClusterSize;
+        }
+
+        /**
+         * Getter for the number of opened cells.
+         */
+        public long openedCellsCount() {
+            return openedCellsCount;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: HoshenKopelman medium.raw ROWS COLS");
+            System.exit(1);
+        }
+        try {
+            Result result = labelFile(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            System.out.println("Opened cells = " + result.openedCellsCount()
+                    + ", Clusters = " + result.clustersCount()
+                    + ", Largest cluster = " + result.largestClusterSize()
+                    + (result.percolates() ? ", Percolates!" : ", Does not percolate"));
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package percolation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A storage of one 32-bit integer per cell.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class IntCellStorage implements CellStorage {
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int[] data;
+
+    /**
+     * Constructor for IntCellStorage.
+     * @param length The number of cells
+     */
+    public IntCellStorage(int length) {
+        data = new int[length];
+    }
+
+    /**
+     * Getter for the raw data array.
+     */
+    public int[] rawData() {
+        return data;
+    }
+
+    @Override
+    public int length() {
+        return data.length;
+    }
+
+    @Override
+    public int get(int id1) {
+        return data[id1];
+    }
+
+    @Override
+    public void set(int id1, int value) {
+        data[id1] = value;
+    }
+
+    @Override
+    public int getVolatile(int id1) {
+        return (int) CELL.getVolatile(data, id1);
+    }
+
+    @Override
+    public boolean compareAndSet(int id1, int expect, int update) {
+        return CELL.compareAndSet(data, id1, expect, update);
+    }
+
+    @Override
+    public void fill(int value) {
+        Arrays.fill(data, value);
+    }
+
+    @Override
+    public int count(int value, Comparison.Operator operation) {
+        return (int) IntStream.of(data)
+                .parallel()
+                .filter(item -> Comparison.test(item, value, operation))
+                .count();
+    }
+
+    @Override
+    public void read(int from, int[] dst, int dstFrom, int length) {
+        System.arraycopy(data, from, dst, dstFrom, length);
+    }
+}
@@ -0,0 +1,236 @@
+package percolation;
+
+/**
+ * The topology of the cells of a Grid: which cells are the neighbours of a cell.
+ * The fluid flows along the rows: the cells of the first row touch the top side,
+ * and the cells of the last row touch the bottom side. A row of a 3D lattice is a whole layer,
+ * stored in a Grid row as nx * ny cells. The side boundaries may be periodic.
+ * The neighbour offsets are kept in flat tables, one block of 'degree' offsets
+ * per parity class of the cells, so a lookup allocates nothing.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public final class Lattice {
+
+    /**
+     * Enum representing the lattice type.
+     */
+    public enum Type {
+        SQUARE,     // 4 neighbours: up, down, left, right
+        TRIANGULAR, // 6 neighbours: the square ones, up-right and down-left
+        HONEYCOMB,  // 3 neighbours in a brick wall: left, right, and down or up by the parity of row + column
+        CUBIC       // 6 neighbours: up and down a layer, left, right, back and forth within a layer
+    }
+
+    private final Type type;
+    private final int nrows; // layers along the flow
+    private final int nx; // cells along the x axis of a layer
+    private final int ny; // cells along the y axis of a layer, 1 for a 2D lattice
+    private final int ncols; // cells of a layer
+    private final boolean periodic; // the x and y sides wrap around
+    private final int degree; // offsets per parity class
+    private final boolean byParity; // the offsets depend on the parity of row + x
+    // offsets of the neighbours along the rows and the x and y axes, 'degree' items per parity class
+    private final int[] dr;
+    private final int[] dx;
+    private final int[] dy;
+
+    private Lattice(Type type, int nRows, int nx, int ny, boolean periodic, int[] dr, int[] dx, int[] dy, int degree) {
+        if (nRows <= 0 || nx <= 0 || ny <= 0) {
+            throw new IllegalArgumentException("Lattice resolution should be positive!");
+        }
+        if ((long) nRows * nx * ny > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many cells in a lattice!");
+        }
+        this.type = type;
+        this.nrows = nRows;
+        this.nx = nx;
+        this.ny = ny;
+        this.ncols = nx * ny;
+        this.periodic = periodic;
+        this.degree = degree;
+        this.byParity = dr.length > degree;
+        this.dr = dr;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+     * A square lattice, the neighbours in the order of up, down, left, right
+     * @param nRows    Vertical resolution, a number of cells in each row
+     * @param nCols    Horizontal resolution, a number of cells in each column
+     * @param periodic The left and right sides wrap around
+     */
+    public static Lattice square(int nRows, int nCols, boolean periodic) {
+        return new Lattice(Type.SQUARE, nRows, nCols, 1, periodic,
+                new int[] {-1, 1, 0, 0},
+                new int[] {0, 0, -1, 1},
+                new int[] {0, 0, 0, 0}, 4);
+    }
+
+    /**
+     * A triangular lattice sheared into a square grid with an up-right to down-left diagonal
+     * @param nRows    Vertical resolution, a number of cells in each row
+     * @param nCols    Horizontal resolution, a number of cells in each column
+     * @param periodic The left and right sides wrap around
+     */
+    public static Lattice triangular(int nRows, int nCols, boolean periodic) {
+        return new Lattice(Type.TRIANGULAR, nRows, nCols, 1, periodic,
+                new int[] {-1, 1, 0, 0, -1, 1},
+                new int[] {0, 0, -1, 1, 1, -1},
+                new int[] {0, 0, 0, 0, 0, 0}, 6);
+    }
+
+    /**
+     * A honeycomb lattice as a brick wall: each cell is linked to the left and right ones,
+     * and to the lower one if row + column is even, or to the upper one otherwise
+     * @param nRows    Vertical resolution, a number of cells in each row
+     * @param nCols    Horizontal resolution, a number of cells in each column
+     * @param periodic The left and right sides wrap around
+     */
+    public static Lattice honeycomb(int nRows, int nCols, boolean periodic) {
+        return new Lattice(Type.HONEYCOMB, nRows, nCols, 1, periodic,
+                new int[] {1, 0, 0, -1, 0, 0},
+                new int[] {0, -1, 1, 0, -1, 1},
+                new int[] {0, 0, 0, 0, 0, 0}, 3);
+    }
+
+    /**
+     * A simple cubic lattice of nz layers of nx * ny cells, the fluid flows across the layers
+     * @param nz       Number of layers
+     * @param ny       Cells along the y axis of a layer
+     * @param nx       Cells along the x axis of a layer
+     * @param periodic The x and y sides wrap around
+     */
+    public static Lattice cubic(int nz, int ny, int nx, boolean periodic) {
+        return new Lattice(Type.CUBIC, nz, nx, ny, periodic,
+                new int[] {-1, 1, 0, 0, 0, 0},
+                new int[] {0, 0, -1, 1, 0, 0},
+                new int[] {0, 0, 0, 0, -1, 1}, 6);
+    }
+
+    /**
+     * Creates a lattice of a type, a 3D one has res layers of res * res cells
+     * @param type     The lattice type
+     * @param res      Resolution in each direction
+     * @param periodic The side boundaries wrap around
+     */
+    public static Lattice of(Type type, int res, boolean periodic) {
+        return switch (type) {
+            case SQUARE -> square(res, res, periodic);
+            case TRIANGULAR -> triangular(res, res, periodic);
+            case HONEYCOMB -> honeycomb(res, res, periodic);
+            case CUBIC -> cubic(res, res, res, periodic);
+        };
+    }
+
+    /**
+     * Getter for the lattice type.
+     */
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Getter for the number of rows of the Grid, the layers along the flow.
+     */
+    public int rowsCount() {
+        return nrows;
+    }
+
+    /**
+     * Getter for the number of columns of the Grid, the cells of a layer.
+     */
+    public int columnsCount() {
+        return ncols;
+    }
+
+    /**
+     * Getter for the number of cells along the x axis of a layer, the columns count of a 2D lattice.
+     */
+    public int xCount() {
+        return nx;
+    }
+
+    /**
+     * Getter for the number of cells.
+     */
+    public int cellsCount() {
+        return nrows * ncols;
+    }
+
+    /**
+     * Getter for the maximal number of neighbours of a cell.
+     */
+    public int degree() {
+        return degree;
+    }
+
+    /**
+     * Checks whether the side boundaries wrap around.
+     */
+    public boolean periodic() {
+        return periodic;
+    }
+
+    /**
+     * Finds the neighbours of a cell
+     * @param id1 1D index of a cell
+     * @param dst Destination of the 1D indices of the neighbours, at least degree() long
+     * @return The number of neighbours written, less than degree() at a non-periodic boundary
+     */
+    public int neighbours(int id1, int[] dst) {
+        int row = id1 / ncols;
+        int col = id1 - row * ncols;
+        int y = col / nx;
+        int x = col - y * nx;
+        int base = byParity ? ((row + x) & 1) * degree : 0;
+        int count = 0;
+        for (int k = base; k < base + degree; k++) {
+            int neighbour = neighbourAt(row, x, y, k);
+            if (neighbour >= 0) {
+                dst[count++] = neighbour;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the k-th neighbour of a cell
+     * @param id1 1D index of a cell
+     * @param k   Index of the neighbour, from 0 to degree() - 1
+     * @return 1D index of the neighbour, -1 if it is beyond a non-periodic boundary
+     */
+    public int neighbour(int id1, int k) {
+        int row = id1 / ncols;
+        int col = id1 - row * ncols;
+        int y = col / nx;
+        int x = col - y * nx;
+        int base = byParity ? ((row + x) & 1) * degree : 0;
+        return neighbourAt(row, x, y, base + k);
+    }
+
+    private int neighbourAt(int row, int x, int y, int k) {
+        int r = row + dr[k];
+        if (r < 0 || r >= nrows) {
+            return -1;
+        }
+        int i = x + dx[k];
+        if (i < 0 || i >= nx) {
+            if (!periodic) {
+                return -1;
+            }
+            i = (i < 0) ? i + nx : i - nx;
+        }
+        int j = y + dy[k];
+        if (j < 0 || j >= ny) {
+            if (!periodic) {
+                return -1;
+            }
+            j = (j < 0) ? j + ny : j - ny;
+        }
+        return (r * ny + j) * nx + i;
+    }
+}
@@ -0,0 +1,89 @@
+package percolation;
+
+import io.MappedIntArray;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * A storage of one 32-bit integer per cell in a memory-mapped file, off the heap.
+ * An existing file of the same size is reopened with the cell values of a previous run.
+ * The file itself is indexed by long, the cells are indexed by int as the whole Grid is.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class MappedCellStorage implements CellStorage {
+    private final MappedIntArray data;
+
+    /**
+     * Constructor for MappedCellStorage.
+     * @param file The file of the cell values
+     * @param length The number of cells
+     * @throws IOException If the file can not be created or mapped
+     */
+    public MappedCellStorage(Path file, int length) throws IOException {
+        data = new MappedIntArray(file, length);
+    }
+
+    /**
+     * Checks whether the cell values of a previous run were reopened.
+     */
+    public boolean reopened() {
+        return data.reopened();
+    }
+
+    /**
+     * Writes the changed cell values to the file.
+     */
+    public void force() {
+        data.force();
+    }
+
+    @Override
+    public int length() {
+        return (int) data.length();
+    }
+
+    @Override
+    public int get(int id1) {
+        return data.get(id1);
+    }
+
+    @Override
+    public void set(int id1, int value) {
+        data.set(id1, value);
+    }
+
+    @Override
+    public int getVolatile(int id1) {
+        return data.getVolatile(id1);
+    }
+
+    @Override
+    public boolean compareAndSet(int id1, int expect, int update) {
+        return data.compareAndSet(id1, expect, update);
+    }
+
+    @Override
+    public void fill(int value) {
+        data.fill(value);
+    }
+
+    @Override
+    public int count(int value, Comparison.Operator operation) {
+        return (int) IntStream.range(0, length())
+                .parallel()
+                .filter(id1 -> Comparison.test(data.get(id1), value, operation))
+                .count();
+    }
+
+    @Override
+    public void read(int from, int[] dst, int dstFrom, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstFrom + i] = data.get(from + i);
+        }
+    }
+}
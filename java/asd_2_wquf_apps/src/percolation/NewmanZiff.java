@@ -0,0 +1,197 @@
+package percolation;
+
+import io.CSVExporter;
+import unionfind.UnionFindQUWeighted;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The Newman-Ziff sweep: each trial opens all cells of a square grid in a random order
+ * and keeps the cluster observables up to date after every opened cell,
+ * so a whole curve over the occupation fraction p costs O(N^2 alpha) per trial.
+ * The observables after n opened cells are averaged over the trials:
+ *   - the percolation probability, a fraction of trials with a top-to-bottom spanning cluster;
+ *   - the size of the largest cluster, as a fraction of all cells;
+ *   - the mean cluster size, the mean size of the cluster of a random opened cell
+ *     outside the largest cluster.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class NewmanZiff {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L; // spreads the seeds of successive trials
+    private static final byte TOP = 1; // the cluster touches the top side
+    private static final byte BOTTOM = 2; // the cluster touches the bottom side
+
+    private final int nrows;
+    private final int ncols;
+    private final int trials;
+    // sums over the trials of the observables after n opened cells, n = 0 ... cellsCount
+    private final double[] spanning;
+    private final double[] largest;
+    private final double[] meanSize;
+
+    // the state of the current trial
+    private final UnionFindQUWeighted connectivity;
+    private final boolean[] opened;
+    private final byte[] sides; // sides touched by a cluster, valid for the roots only
+    private final int[] order;
+    private final int[] neighbours = new int[4]; // up, down, left, right, -1 if outside the grid
+
+    /**
+     * Performs independent sweeps on a grid
+     * @param nRows  Vertical resolution, a number of cells in each row
+     * @param nCols  Horizontal resolution, a number of cells in each column
+     * @param trials Number of trials
+     * @param seed   Seed of the first trial, the t-th trial is seeded by a value derived from it
+     */
+    public NewmanZiff(int nRows, int nCols, int trials, long seed) {
+        if (nRows <= 0 || nCols <= 0 || trials <= 0) {
+            throw new IllegalArgumentException("Resolution and trials count should be positive!");
+        }
+        this.nrows = nRows;
+        this.ncols = nCols;
+        this.trials = trials;
+        int n = nRows * nCols;
+        spanning = new double[n + 1];
+        largest = new double[n + 1];
+        meanSize = new double[n + 1];
+        connectivity = new UnionFindQUWeighted(n, false);
+        opened = new boolean[n];
+        sides = new byte[n];
+        order = new int[n];
+
+        Random rnd = new Random();
+        for (int t = 0; t < trials; t++) {
+            rnd.setSeed(seed + t * SEED_STEP);
+            runTrial(rnd);
+        }
+    }
+
+    private void runTrial(Random rnd) {
+        int n = order.length;
+        connectivity.reset();
+        for (int i = 0; i < n; i++) {
+            opened[i] = false;
+            order[i] = i;
+        }
+        // Fisher-Yates shuffle of the opening order
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        boolean spans = false;
+        long sumOfSquares = 0; // sum of squared sizes of all clusters of opened cells
+        for (int step = 0; step < n; step++) {
+            int id1 = order[step];
+            int row = id1 / ncols;
+            int col = id1 - ncols * row;
+            opened[id1] = true;
+            // a single row touches the top side only, as the solver joins it to the virtual top node only
+            sides[id1] = (row == 0) ? TOP : (row == nrows - 1) ? BOTTOM : 0;
+            sumOfSquares += 1;
+
+            neighbours[0] = row > 0 ? id1 - ncols : -1;
+            neighbours[1] = row < nrows - 1 ? id1 + ncols : -1;
+            neighbours[2] = col > 0 ? id1 - 1 : -1;
+            neighbours[3] = col < ncols - 1 ? id1 + 1 : -1;
+            for (int neighbour : neighbours) {
+                if (neighbour < 0 || !opened[neighbour]) {
+                    continue;
+                }
+                int rootA = connectivity.find(id1);
+                int rootB = connectivity.find(neighbour);
+                if (rootA == rootB) {
+                    continue;
+                }
+                long sizeA = connectivity.componentSize(rootA);
+                long sizeB = connectivity.componentSize(rootB);
+                byte merged = (byte) (sides[rootA] | sides[rootB]);
+                connectivity.union(rootA, rootB);
+                sides[connectivity.find(rootA)] = merged;
+                // (a + b)^2 replaces a^2 + b^2
+                sumOfSquares += 2 * sizeA * sizeB;
+            }
+            spans |= (sides[connectivity.find(id1)] == (TOP | BOTTOM));
+
+            // the closed cells are the clusters of a single element, they never exceed an opened one
+            int largestSize = connectivity.largestComponentSize();
+            int openedCount = step + 1;
+            spanning[openedCount] += spans ? 1 : 0;
+            largest[openedCount] += (double) largestSize / n;
+            long others = openedCount - largestSize;
+            meanSize[openedCount] += (others > 0)
+                    ? (double) (sumOfSquares - (long) largestSize * largestSize) / others
+                    : 0;
+        }
+    }
+
+    /**
+     * Getter for the number of cells of the grid.
+     */
+    public int cellsCount() {
+        return order.length;
+    }
+
+    /**
+     * Percolation probability after n opened cells, averaged over the trials
+     */
+    public double percolationProbability(int n) {
+        return spanning[n] / trials;
+    }
+
+    /**
+     * Size of the largest cluster after n opened cells as a fraction of all cells, averaged over the trials
+     */
+    public double largestClusterFraction(int n) {
+        return largest[n] / trials;
+    }
+
+    /**
+     * Mean cluster size after n opened cells, averaged over the trials
+     */
+    public double meanClusterSize(int n) {
+        return meanSize[n] / trials;
+    }
+
+    /**
+     * Writes the observables binned by the occupation fraction p into a CSV file.
+     * Each bin averages the curves over an equal range of the opened cells count.
+     * @param fileName File path and name with *.CSV extension
+     * @param bins     Number of bins over p in (0, 1]
+     */
+    public void writeCsv(String fileName, int bins) throws IOException {
+        int n = cellsCount();
+        bins = Math.min(bins, n);
+        if (bins <= 0) {
+            throw new IllegalArgumentException("Bins count should be positive!");
+        }
+        double[] p = new double[bins];
+        double[] probability = new double[bins];
+        double[] largestFraction = new double[bins];
+        double[] mean = new double[bins];
+        for (int bin = 0; bin < bins; bin++) {
+            int first = (int) ((long) bin * n / bins) + 1;
+            int last = (int) ((long) (bin + 1) * n / bins);
+            for (int k = first; k <= last; k++) {
+                p[bin] += (double) k / n;
+                probability[bin] += percolationProbability(k);
+                largestFraction[bin] += largestClusterFraction(k);
+                mean[bin] += meanClusterSize(k);
+            }
+            int count = last - first + 1;
+            p[bin] /= count;
+            probability[bin] /= count;
+            largestFraction[bin] /= count;
+            mean[bin] /= count;
+        }
+        CSVExporter.writeFile(fileName,
+                new String[] {"p", "percolation_probability", "largest_cluster_fraction", "mean_cluster_size"},
+                p, probability, largestFraction, mean);
+    }
+}
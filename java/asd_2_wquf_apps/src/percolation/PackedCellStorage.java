@@ -0,0 +1,148 @@
+package percolation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.stream.IntStream;
+
+/**
+ * A compact storage of 2 bits per cell packed into 64-bit words,
+ * enough for the cell values in the range [0, 3].
+ * It takes 16 times less memory than the IntCellStorage.
+ * Cells of the same word must not be modified by set() from different threads at once,
+ * compareAndSet() is safe for that.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class PackedCellStorage implements CellStorage {
+    public static final int BITS_PER_CELL = 2;
+    public static final int CELLS_PER_WORD = Long.SIZE / BITS_PER_CELL;
+    public static final int MAX_VALUE = (1 << BITS_PER_CELL) - 1;
+    private static final long LOW_BITS = 0x5555555555555555L; // the lower bit of each cell
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+    private final int length;
+
+    /**
+     * Constructor for PackedCellStorage.
+     * @param length The number of cells
+     */
+    public PackedCellStorage(int length) {
+        this.length = length;
+        words = new long[(length + CELLS_PER_WORD - 1) / CELLS_PER_WORD];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int get(int id1) {
+        return (int) (words[id1 / CELLS_PER_WORD] >>> shift(id1)) & MAX_VALUE;
+    }
+
+    @Override
+    public void set(int id1, int value) {
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Packed cell value should be in [0, " + MAX_VALUE + "]!");
+        }
+        int w = id1 / CELLS_PER_WORD;
+        int shift = shift(id1);
+        words[w] = (words[w] & ~((long) MAX_VALUE << shift)) | ((long) value << shift);
+    }
+
+    @Override
+    public int getVolatile(int id1) {
+        return (int) ((long) WORD.getVolatile(words, id1 / CELLS_PER_WORD) >>> shift(id1)) & MAX_VALUE;
+    }
+
+    @Override
+    public boolean compareAndSet(int id1, int expect, int update) {
+        if (update < 0 || update > MAX_VALUE) {
+            throw new IllegalArgumentException("Packed cell value should be in [0, " + MAX_VALUE + "]!");
+        }
+        int w = id1 / CELLS_PER_WORD;
+        int shift = shift(id1);
+        while (true) {
+            long word = (long) WORD.getVolatile(words, w);
+            if ((int) (word >>> shift & MAX_VALUE) != expect) {
+                return false;
+            }
+            long updated = (word & ~((long) MAX_VALUE << shift)) | ((long) update << shift);
+            // retry if another cell of the same word has changed meanwhile
+            if (WORD.compareAndSet(words, w, word, updated)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void fill(int value) {
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Packed cell value should be in [0, " + MAX_VALUE + "]!");
+        }
+        long pattern = LOW_BITS * value; // the value repeated in every cell of a word
+        for (int w = 0; w < words.length; w++) {
+            words[w] = pattern;
+        }
+    }
+
+    @Override
+    public int count(int value, Comparison.Operator operation) {
+        // a cell of value v has its higher bit set if (v & 2) != 0, and its lower bit if (v & 1) != 0
+        boolean[] matches = new boolean[MAX_VALUE + 1];
+        for (int v = 0; v <= MAX_VALUE; v++) {
+            matches[v] = Comparison.test(v, value, operation);
+        }
+        return (int) IntStream.range(0, words.length)
+                .parallel()
+                .mapToLong(w -> countInWord(w, matches))
+                .sum();
+    }
+
+    /**
+     * Counts the cells of the matching values within a word by the bit population counts
+     * @param w The word index
+     * @param matches Whether each of the values 0, 1, 2, and 3 has to be counted
+     * @return Count of the matching cells
+     */
+    private int countInWord(int w, boolean[] matches) {
+        int cellsInWord = Math.min(CELLS_PER_WORD, length - w * CELLS_PER_WORD);
+        // the lower bit of each cell in use
+        long used = (cellsInWord == CELLS_PER_WORD) ? LOW_BITS : LOW_BITS & ((1L << (BITS_PER_CELL * cellsInWord)) - 1);
+        long lo = words[w] & used;
+        long hi = (words[w] >>> 1) & used;
+        int count = 0;
+        for (int v = 0; v <= MAX_VALUE; v++) {
+            if (matches[v]) {
+                long hiMatch = ((v & 2) != 0) ? hi : ~hi;
+                long loMatch = ((v & 1) != 0) ? lo : ~lo;
+                count += Long.bitCount(hiMatch & loMatch & used);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void read(int from, int[] dst, int dstFrom, int length) {
+        int w = from / CELLS_PER_WORD;
+        long word = words[w] >>> shift(from);
+        int left = CELLS_PER_WORD - from % CELLS_PER_WORD; // cells left in the current word
+        for (int i = 0; i < length; i++) {
+            if (left == 0) {
+                word = words[++w];
+                left = CELLS_PER_WORD;
+            }
+            dst[dstFrom + i] = (int) word & MAX_VALUE;
+            word >>>= BITS_PER_CELL;
+            left--;
+        }
+    }
+
+    private static int shift(int id1) {
+        return (id1 % CELLS_PER_WORD) * BITS_PER_CELL;
+    }
+}
@@ -1,9 +1,11 @@
 package percolation;
 
 import unionfind.IUnionFind;
-import unionfind.UnionFindQUWeighted;
+import unionfind.IWeightedUnionFind;
+import unionfind.UnionFindType;
 import utils.Logger;
 
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
@@ -13,30 +15,264 @@ import java.util.stream.IntStream;
  * A solver that uses the UnionFind-like data structures
  * to implement the dynamic connectivity between the cells of
  * a pseudo 2D grid representing a porous medium that may or may not
- * percolate a fluid.
+ * percolate a fluid. The neighbours of a cell are given by a Lattice,
+ * a non-periodic square one unless specified.
  * Authors:
  *   - Ilya Tsivilskiy
  * Copyright: (c) 2023 Ilya Tsivilskiy
  * License: This file is licensed under the MIT License.
  */
 public class PercolationSolver {
+    /**
+     * Enum representing the way the 'filled' status of the cells is kept up to date.
+     */
+    public enum FillMode {
+        RESCAN,     // re-check all cells in updateCellsFilledStatus()
+        INCREMENTAL // flood-fill only the cells that joined the top cluster on each open()
+    }
+
+    /**
+     * Enum representing what is opened.
+     */
+    public enum Mode {
+        SITE, // the cells are opened, an opened cell is joined to all of its opened neighbours
+        BOND  // all cells are opened, the bonds between the neighbouring cells are opened on a square lattice
+    }
+
+    /**
+     * Enum representing the bonds of a cell, each cell stores its own ones in 2 bits.
+     */
+    public enum Bond {
+        DOWN, // to the lower neighbour
+        RIGHT // to the right neighbour, wraps around on a periodic lattice
+    }
+
+    /**
+     * Enum representing the sides of the grid, a cluster keeps the ones it touches as bits of a mask.
+     */
+    public enum Side {
+        TOP,    // the first row, joined to the virtual top node
+        BOTTOM, // the last row, joined to the virtual bottom node
+        LEFT,   // the first cell along the x axis of a layer, on a periodic lattice set with RIGHT by a winding
+        RIGHT;  // the last cell along the x axis of a layer, on a periodic lattice set with LEFT by a winding
+
+        /**
+         * Getter for the bit of the side in a mask.
+         */
+        public int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    /**
+     * Enum representing the spanning criteria, each one is met by a single cluster touching all of its sides.
+     * A periodic lattice has no x sides, so LEFT_RIGHT is met by a cluster winding around the x axis there.
+     */
+    public enum Spanning {
+        TOP_BOTTOM(Side.TOP, Side.BOTTOM),
+        LEFT_RIGHT(Side.LEFT, Side.RIGHT),
+        ALL_SIDES(Side.TOP, Side.BOTTOM, Side.LEFT, Side.RIGHT);
+
+        private final int mask;
+
+        Spanning(Side... sides) {
+            int bits = 0;
+            for (Side side : sides) {
+                bits |= side.bit();
+            }
+            this.mask = bits;
+        }
+    }
+
+    private static final Spanning[] SPANNINGS = Spanning.values();
+    private static final int WINDING = Side.LEFT.bit() | Side.RIGHT.bit(); // side bits of a cluster around the x axis
+
     private final Grid grid;
+    private final int nrows; // cached grid resolution
+    private final int ncols;
+    private final Lattice lattice;
+    private final int[] neighbourIDs; // neighbours of the cell being opened or filled
     private final IUnionFind connectivity;
+    private final Mode mode;
+    private final PackedCellStorage bonds; // the opened bonds of each cell as Bond bits, null in the site mode
+    private final ClosedCellSampler closedBonds; // 2 slots per cell, bond id = 2 * cell + Bond ordinal
     private final int vTopID;
     private final int vBottomID;
-    private final Random rnd;
+    private final ClosedCellSampler closedCells;
+    private Random rnd;
     private final boolean ll;
     private final boolean debug;
+    private final FillMode fillMode;
+    private CellStorage floodStack; // pending cells of the incremental flood-fill
+    private boolean bottomFilled; // the bottom virtual node is reached by the fluid
+    private SpanningClusters spanningClusters; // clusters of the cells and their sides, null unless the spanning is tracked
+    private int[] spanningSteps; // step at which each Spanning criterion was first met, -1 if not yet
 
     public PercolationSolver(Grid grid, boolean ll, boolean debug) {
-        this.grid = grid;
+        this(grid, ll, debug, FillMode.RESCAN);
+    }
+
+    public PercolationSolver(Grid grid, boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, UnionFindType.WEIGHTED_FAST, ll, debug, fillMode);
+    }
+
+    public PercolationSolver(Grid grid, UnionFindType connectivityType, boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, connectivityType.create(grid.cellsCount() + 2), ll, debug, fillMode);
+    }
+
+    /**
+     * Constructor for PercolationSolver reusing a connectivity data structure.
+     * @param grid         The grid of cells, its current state is taken as the initial one
+     * @param connectivity A data structure of cellsCount + 2 elements, the last two are the virtual top and bottom
+     * @param ll           Run the rescan of cells on multiple processors
+     * @param debug        Print out the selected cells
+     * @param fillMode     The way the 'filled' status of the cells is kept up to date
+     */
+    public PercolationSolver(Grid grid, IUnionFind connectivity, boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, Lattice.square(grid.rowsCount(), grid.columnsCount(), false), connectivity, ll, debug, fillMode);
+    }
+
+    public PercolationSolver(Grid grid, Lattice lattice, UnionFindType connectivityType,
+                             boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, lattice, connectivityType.create(grid.cellsCount() + 2), ll, debug, fillMode);
+    }
+
+    /**
+     * Constructor for PercolationSolver on any lattice topology.
+     * @param grid         The grid of cells, its current state is taken as the initial one
+     * @param lattice      The neighbours of the cells, of the same rows and columns count as the grid
+     * @param connectivity A data structure of cellsCount + 2 elements, the last two are the virtual top and bottom
+     * @param ll           Run the rescan of cells on multiple processors
+     * @param debug        Print out the selected cells
+     * @param fillMode     The way the 'filled' status of the cells is kept up to date
+     */
+    public PercolationSolver(Grid grid, Lattice lattice, IUnionFind connectivity,
+                             boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, lattice, connectivity, Mode.SITE, ll, debug, fillMode);
+    }
+
+    public PercolationSolver(Grid grid, Lattice lattice, UnionFindType connectivityType, Mode mode,
+                             boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, lattice, connectivityType.create(grid.cellsCount() + 2), mode, ll, debug, fillMode);
+    }
+
+    /**
+     * Constructor for PercolationSolver of site or bond percolation.
+     * @param grid         The grid of cells, its current state is taken as the initial one in the site mode,
+     *                     it is reset to all opened cells and closed bonds in the bond mode
+     * @param lattice      The neighbours of the cells, of the same rows and columns count as the grid,
+     *                     a square one in the bond mode
+     * @param connectivity A data structure of cellsCount + 2 elements, the last two are the virtual top and bottom
+     * @param mode         Whether the cells or the bonds between them are opened
+     * @param ll           Run the rescan of cells on multiple processors
+     * @param debug        Print out the selected cells
+     * @param fillMode     The way the 'filled' status of the cells is kept up to date
+     */
+    public PercolationSolver(Grid grid, Lattice lattice, IUnionFind connectivity, Mode mode,
+                             boolean ll, boolean debug, FillMode fillMode) {
+        this(grid, lattice, connectivity, mode, ll, debug, fillMode, StorageFactory.HEAP);
+    }
+
+    /**
+     * Constructor for PercolationSolver keeping its per-cell arrays in the given storages,
+     * which are the index of the closed cells, or bonds, and the flood stack.
+     * @param grid         The grid of cells, its current state is taken as the initial one in the site mode,
+     *                     it is reset to all opened cells and closed bonds in the bond mode
+     * @param lattice      The neighbours of the cells, of the same rows and columns count as the grid,
+     *                     a square one in the bond mode
+     * @param connectivity A data structure of cellsCount + 2 elements, the last two are the virtual top and bottom
+     * @param mode         Whether the cells or the bonds between them are opened
+     * @param ll           Run the rescan of cells on multiple processors
+     * @param debug        Print out the selected cells
+     * @param fillMode     The way the 'filled' status of the cells is kept up to date
+     * @param storage      The source of the per-cell arrays, such as StorageFactory.HEAP
+     */
+    public PercolationSolver(Grid grid, Lattice lattice, IUnionFind connectivity, Mode mode,
+                             boolean ll, boolean debug, FillMode fillMode, StorageFactory storage) {
         int totalCells = grid.cellsCount();
+        if (connectivity.elementsCount() != totalCells + 2) {
+            throw new IllegalArgumentException("Connectivity size should be equal to cells count + 2!");
+        }
+        if (lattice.rowsCount() != grid.rowsCount() || lattice.columnsCount() != grid.columnsCount()) {
+            throw new IllegalArgumentException("Lattice resolution should match the grid one!");
+        }
+        if (mode == Mode.BOND && lattice.type() != Lattice.Type.SQUARE) {
+            throw new IllegalArgumentException("Bond mode requires a square lattice!");
+        }
+        this.grid = grid;
+        this.nrows = grid.rowsCount();
+        this.ncols = grid.columnsCount();
+        this.lattice = lattice;
+        this.neighbourIDs = new int[lattice.degree()];
         this.vTopID = totalCells;
         this.vBottomID = totalCells + 1;
-        this.connectivity = new UnionFindQUWeighted(totalCells + 2, false);
+        this.connectivity = connectivity;
+        this.mode = mode;
+        this.bonds = (mode == Mode.BOND) ? new PackedCellStorage(totalCells) : null;
+        this.closedBonds = (mode == Mode.BOND) ? new ClosedCellSampler(2 * totalCells, storage, "bonds") : null;
+        this.closedCells = new ClosedCellSampler(grid, storage, "closed");
         this.rnd = ThreadLocalRandom.current();
         this.ll = ll;
         this.debug = debug;
+        this.fillMode = fillMode;
+        if (fillMode == FillMode.INCREMENTAL) {
+            // every cell is pushed at most once per run
+            this.floodStack = storage.create("flood.stack", totalCells);
+            // a grid reopened from a file may be filled down to the bottom row already
+            int filled = Grid.is(Grid.Status.OPENED_AND_FILLED);
+            for (int i = totalCells - ncols; nrows > 1 && i < totalCells && !bottomFilled; i++) {
+                bottomFilled = grid.get(i) == filled;
+            }
+        }
+        if (mode == Mode.BOND) {
+            reset();
+        }
+    }
+
+    /**
+     * Closes all cells and forgets the connectivity between them in place,
+     * so the same grid, connectivity and solver can be reused for another run without allocations
+     */
+    public void reset() {
+        grid.reset();
+        connectivity.reset();
+        closedCells.reset();
+        bottomFilled = false;
+        if (spanningClusters != null) {
+            initSpanning();
+        }
+        if (mode == Mode.BOND) {
+            openAllCells();
+        }
+    }
+
+    /**
+     * Opens all cells with all bonds closed: each cell is a cluster of its own,
+     * and the cells of the top and the bottom rows are joined to the virtual nodes
+     */
+    private void openAllCells() {
+        bonds.fill(0);
+        closedBonds.reset();
+        // the bonds beyond the boundaries do not exist
+        for (int id1 = 0; id1 < grid.cellsCount(); id1++) {
+            if (bondNeighbour(id1, Bond.DOWN.ordinal()) < 0) {
+                closedBonds.remove(2 * id1 + Bond.DOWN.ordinal());
+            }
+            if (bondNeighbour(id1, Bond.RIGHT.ordinal()) < 0) {
+                closedBonds.remove(2 * id1 + Bond.RIGHT.ordinal());
+            }
+        }
+        grid.fill(Grid.is(Grid.Status.OPENED));
+        for (int id1 = 0; id1 < grid.cellsCount(); id1++) {
+            closedCells.remove(id1);
+            markSides(id1);
+            connectVirtual(id1);
+        }
+        if (fillMode == FillMode.INCREMENTAL) {
+            for (int col = 0; col < ncols; col++) {
+                fillFrom(col);
+            }
+        }
     }
 
     /**
@@ -45,31 +281,615 @@ public class PercolationSolver {
      * @param col Horizontal index of a cell in a 2D grid
      */
     public void open(int row, int col) {
-        if (isOpened(row, col)) {
+        requireSiteMode();
+        openUnchecked(grid.i1(row, col));
+    }
+
+    /**
+     * Open a specific cell of the 2D grid for the potential percolation
+     * @param id1 1D index of a cell in a flatten array
+     */
+    public void open(int id1) {
+        requireSiteMode();
+        if (id1 < 0 || id1 >= grid.cellsCount()) {
+            throw new IllegalArgumentException("Index out of range!");
+        }
+        openUnchecked(id1);
+    }
+
+    /**
+     * Opens a cell without the range check of its index, allocates nothing
+     * @param id1 1D index of a cell in a flatten array, should be in the grid
+     */
+    private void openUnchecked(int id1) {
+        if (isOpened(id1)) {
             return;
         }
 
-        grid.set(row, col, Grid.is(Grid.Status.OPENED));
+        grid.set(id1, Grid.is(Grid.Status.OPENED));
+        closedCells.remove(id1);
+        markSides(id1);
+        connectOpened(id1);
 
-        int currentCellID = grid.i1(row, col);
+        if (fillMode == FillMode.INCREMENTAL && percolatesUpToCell(id1)) {
+            fillFrom(id1);
+        }
+    }
+
+    /**
+     * Connects an opened cell to the virtual nodes and to its opened neighbours
+     * @param id1 1D index of a cell in a flatten array, should be in the grid
+     */
+    private void connectOpened(int id1) {
+        connectVirtual(id1);
+
+        // on a square lattice: the upper, lower, left, and right neighbours
+        int count = lattice.neighbours(id1, neighbourIDs);
+        for (int k = 0; k < count; k++) {
+            unionIfOpened(id1, neighbourIDs[k]);
+        }
+    }
+
+    /**
+     * Connects a cell of the top or the bottom row to the virtual top or bottom node
+     * @param id1 1D index of a cell in a flatten array, should be in the grid
+     */
+    private void connectVirtual(int id1) {
+        int row = id1 / ncols;
 
         if (row == 0) {
-            connectivity.union(currentCellID, vTopID);
-        } else if (row == grid.rowsCount() - 1) {
-            connectivity.union(currentCellID, vBottomID);
-        }
-
-        int[][] neighbours = { {-1, 0}, {1, 0}, {0, -1}, {0, 1} };
-        for (int[] neighbour : neighbours) {
-            int neighborRow = row + neighbour[0];
-            int neighborCol = col + neighbour[1];
-            if (grid.containsCell(neighborRow, neighborCol)) {
-                int neighborCellID = grid.i1(neighborRow, neighborCol);
-                if (isOpened(neighborCellID)) {
-                    connectivity.union(currentCellID, neighborCellID);
+            connectivity.union(id1, vTopID);
+        } else if (row == nrows - 1) {
+            connectivity.union(id1, vBottomID);
+        }
+    }
+
+    /**
+     * Joins the clusters of two cells, and merges the sides they touch if the spanning is tracked
+     * @param id1         1D index of a cell
+     * @param neighbourID 1D index of a neighbouring cell
+     */
+    private void union(int id1, int neighbourID) {
+        connectivity.union(id1, neighbourID);
+        if (spanningClusters != null) {
+            unionSides(id1, neighbourID);
+        }
+    }
+
+    private void unionSides(int id1, int neighbourID) {
+        int mask = spanningClusters.union(id1, neighbourID, xStep(id1, neighbourID),
+                lattice.periodic() ? WINDING : 0);
+        if (mask >= 0) {
+            recordSpanning(mask);
+        }
+    }
+
+    /**
+     * Finds the step along the x axis of a link between two neighbouring cells
+     * @param id1         1D index of a cell
+     * @param neighbourID 1D index of a neighbouring cell
+     * @return -1, 0 or 1, a link across a periodic boundary is a single step beyond it
+     */
+    private int xStep(int id1, int neighbourID) {
+        int nx = lattice.xCount();
+        int step = (neighbourID % ncols) % nx - (id1 % ncols) % nx;
+        if (step > 1) {
+            step -= nx;
+        } else if (step < -1) {
+            step += nx;
+        }
+        return step;
+    }
+
+    private void requireSiteMode() {
+        if (mode != Mode.SITE) {
+            throw new IllegalStateException("All cells are opened in the bond mode, open the bonds instead!");
+        }
+    }
+
+    /**
+     * Open a bond between a cell and its lower or right neighbour
+     * @param id1  1D index of a cell in a flatten array
+     * @param bond The bond of the cell to open
+     */
+    public void openBond(int id1, Bond bond) {
+        if (mode != Mode.BOND) {
+            throw new IllegalStateException("Bonds are opened in the bond mode only!");
+        }
+        if (id1 < 0 || id1 >= grid.cellsCount() || bondNeighbour(id1, bond.ordinal()) < 0) {
+            throw new IllegalArgumentException("Bond out of range!");
+        }
+        openBondUnchecked(2 * id1 + bond.ordinal());
+    }
+
+    /**
+     * Opens a bond, joins the clusters of its cells and fills the cells joining the top cluster
+     * @param bondID 2 * cell + Bond ordinal, should exist in the grid
+     */
+    private void openBondUnchecked(int bondID) {
+        int id1 = bondID >> 1;
+        int bit = 1 << (bondID & 1);
+        int cellBonds = bonds.get(id1);
+        if ((cellBonds & bit) != 0) {
+            return;
+        }
+        bonds.set(id1, cellBonds | bit);
+        closedBonds.remove(bondID);
+        int neighbourID = bondNeighbour(id1, bondID & 1);
+        union(id1, neighbourID);
+
+        if (fillMode == FillMode.INCREMENTAL && percolatesUpToCell(id1)) {
+            // one of the cells may be filled already, the fill goes from the other one
+            fillFrom(id1);
+            fillFrom(neighbourID);
+        }
+    }
+
+    /**
+     * Checks whether a bond between a cell and its lower or right neighbour is opened
+     * @param id1  1D index of a cell in a flatten array
+     * @param bond The bond of the cell
+     */
+    public boolean isBondOpened(int id1, Bond bond) {
+        return mode == Mode.BOND && (bonds.get(id1) & (1 << bond.ordinal())) != 0;
+    }
+
+    /**
+     * Finds the cell at the other end of a bond
+     * @param id1 1D index of a cell
+     * @param dir Bond ordinal
+     * @return 1D index of the neighbour, -1 if the bond does not exist
+     */
+    private int bondNeighbour(int id1, int dir) {
+        int row = id1 / ncols;
+        int col = id1 - row * ncols;
+        if (dir == Bond.DOWN.ordinal()) {
+            return (row < nrows - 1) ? id1 + ncols : -1;
+        }
+        if (col < ncols - 1) {
+            return id1 + 1;
+        }
+        // a single column has no bond to wrap around to
+        return (lattice.periodic() && ncols > 1) ? id1 - col : -1;
+    }
+
+    /**
+     * Finds the neighbours a cell is linked to: all lattice neighbours in the site mode,
+     * the neighbours across the opened bonds in the bond mode, in the order of up, down, left, right
+     * @param id1 1D index of a cell
+     * @param dst Destination of the 1D indices of the neighbours, at least the lattice degree long
+     * @return The number of neighbours written
+     */
+    private int linkedNeighbours(int id1, int[] dst) {
+        if (mode == Mode.SITE) {
+            return lattice.neighbours(id1, dst);
+        }
+        int row = id1 / ncols;
+        int col = id1 - row * ncols;
+        int count = 0;
+        if (row > 0 && (bonds.get(id1 - ncols) & (1 << Bond.DOWN.ordinal())) != 0) {
+            dst[count++] = id1 - ncols;
+        }
+        if ((bonds.get(id1) & (1 << Bond.DOWN.ordinal())) != 0) {
+            dst[count++] = id1 + ncols;
+        }
+        int left = (col > 0) ? id1 - 1 : (lattice.periodic() && ncols > 1 ? id1 + ncols - 1 : -1);
+        if (left >= 0 && (bonds.get(left) & (1 << Bond.RIGHT.ordinal())) != 0) {
+            dst[count++] = left;
+        }
+        if ((bonds.get(id1) & (1 << Bond.RIGHT.ordinal())) != 0) {
+            dst[count++] = bondNeighbour(id1, Bond.RIGHT.ordinal());
+        }
+        return count;
+    }
+
+    /**
+     * Connects a cell to its neighbour if the latter is opened
+     * @param id1         1D index of a cell
+     * @param neighbourID 1D index of a neighbouring cell
+     */
+    private void unionIfOpened(int id1, int neighbourID) {
+        if (isOpened(neighbourID)) {
+            union(id1, neighbourID);
+        }
+    }
+
+    /**
+     * Opens a batch of cells at once. The indices are validated once, all the cells are marked
+     * as opened, and then they are connected to their neighbours in a single sweep
+     * in the order of their indices, which walks the grid memory forward.
+     * @param ids 1D indices of the cells to open, may contain the opened cells and duplicates
+     * @return Whether the grid percolates after the batch, and the cell that completed the path in the sweep
+     */
+    public BatchResult open(int[] ids) {
+        requireSiteMode();
+        for (int id1 : ids) {
+            if (id1 < 0 || id1 >= grid.cellsCount()) {
+                throw new IllegalArgumentException("Index out of range!");
+            }
+        }
+        boolean percolatedBefore = percolatesTotally();
+
+        // mark the new cells, keeping them sorted at the beginning of the array
+        int[] cells = ids.clone();
+        Arrays.sort(cells);
+        int newCount = 0;
+        for (int id1 : cells) {
+            if (!isOpened(id1)) {
+                grid.set(id1, Grid.is(Grid.Status.OPENED));
+                closedCells.remove(id1);
+                markSides(id1);
+                cells[newCount++] = id1;
+            }
+        }
+
+        int percolatingCell = -1;
+        for (int i = 0; i < newCount; i++) {
+            connectOpened(cells[i]);
+            if (!percolatedBefore && percolatingCell < 0 && percolatesTotally()) {
+                percolatingCell = cells[i];
+            }
+        }
+
+        if (fillMode == FillMode.INCREMENTAL) {
+            // every cell that has joined the top cluster is connected to one of the batch
+            for (int i = 0; i < newCount; i++) {
+                if (percolatesUpToCell(cells[i])) {
+                    fillFrom(cells[i]);
                 }
             }
         }
+        return new BatchResult(percolatedBefore || percolatingCell >= 0, percolatingCell);
+    }
+
+    /**
+     * The outcome of opening a batch of cells.
+     */
+    public static class BatchResult {
+        private final boolean percolates;
+        private final int percolatingCell;
+
+        public BatchResult(boolean percolates, int percolatingCell) {
+            this.percolates = percolates;
+            this.percolatingCell = percolatingCell;
+        }
+
+        /**
+         * Checks whether the grid percolates after the batch
+         */
+        public boolean percolates() {
+            return percolates;
+        }
+
+        /**
+         * Checks whether the grid did not percolate before the batch, but does after it
+         */
+        public boolean percolatedInBatch() {
+            return percolatingCell >= 0;
+        }
+
+        /**
+         * Getter for the 1D index of the cell whose connection completed the top-to-bottom path
+         * during the sweep, -1 if the percolation did not happen within the batch.
+         * The sweep goes in the order of cell indices, not in the order of the batch.
+         */
+        public int percolatingCell() {
+            return percolatingCell;
+        }
+    }
+
+    /**
+     * Opens a batch of cells on multiple processors.
+     * The connectivity should be safe for concurrent updates, such as UnionFindConcurrent
+     * or a UnionFindMetrics wrapping it.
+     * The cells are marked and connected to their neighbours in parallel,
+     * then the index of closed cells and the filled status are updated on the calling thread.
+     * @param ids 1D indices of the cells to open
+     */
+    public void openParallel(int[] ids) {
+        requireSiteMode();
+        if (!connectivity.isConcurrent()) {
+            throw new IllegalStateException("Parallel opening requires a concurrent connectivity!");
+        }
+        if (spanningClusters != null) {
+            throw new IllegalStateException("Spanning tracking does not support the parallel opening!");
+        }
+        for (int id1 : ids) {
+            if (id1 < 0 || id1 >= grid.cellsCount()) {
+                throw new IllegalArgumentException("Index out of range!");
+            }
+        }
+
+        IntStream.of(ids).parallel().forEach(this::openConcurrently);
+
+        for (int id1 : ids) {
+            closedCells.remove(id1);
+        }
+        if (fillMode == FillMode.INCREMENTAL) {
+            // every cell that has joined the top cluster is connected to one of the batch
+            for (int id1 : ids) {
+                if (percolatesUpToCell(id1)) {
+                    fillFrom(id1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a cell, may run concurrently with the other calls of this method.
+     * Both the cell status update and the neighbour status reads are volatile,
+     * so of any two adjacent cells opened at once, at least one sees the other one opened.
+     * @param id1 1D index of a cell in a flatten array, should be in the grid
+     */
+    private void openConcurrently(int id1) {
+        if (!grid.compareAndSet(id1, Grid.is(Grid.Status.CLOSED), Grid.is(Grid.Status.OPENED))) {
+            return;
+        }
+
+        int row = id1 / ncols;
+
+        if (row == 0) {
+            connectivity.union(id1, vTopID);
+        } else if (row == nrows - 1) {
+            connectivity.union(id1, vBottomID);
+        }
+
+        // the shared neighbours buffer is not used, since the calls run concurrently
+        for (int k = 0; k < lattice.degree(); k++) {
+            int neighbourID = lattice.neighbour(id1, k);
+            if (neighbourID >= 0) {
+                unionIfOpenedVolatile(id1, neighbourID);
+            }
+        }
+    }
+
+    private void unionIfOpenedVolatile(int id1, int neighbourID) {
+        if (grid.getVolatile(neighbourID) > Grid.is(Grid.Status.CLOSED)) {
+            connectivity.union(id1, neighbourID);
+        }
+    }
+
+    /**
+     * Replaces the random number generator by a seeded one to make the runs reproducible
+     * @param seed The seed of the random number generator
+     */
+    public void setSeed(long seed) {
+        if (rnd instanceof ThreadLocalRandom) {
+            rnd = new Random(seed); // ThreadLocalRandom can not be seeded
+        } else {
+            rnd.setSeed(seed);
+        }
+    }
+
+    /**
+     * Getter for the number of cells opened so far.
+     */
+    public int openedCellsCount() {
+        return grid.cellsCount() - closedCells.closedCount();
+    }
+
+    /**
+     * Getter for the number of bonds between the cells, 0 in the site mode.
+     */
+    public int bondsCount() {
+        return (mode == Mode.BOND) ? bondsCount(nrows, ncols, lattice.periodic()) : 0;
+    }
+
+    /**
+     * Getter for the number of bonds opened so far, 0 in the site mode.
+     */
+    public int openedBondsCount() {
+        return (mode == Mode.BOND) ? bondsCount() - closedBonds.closedCount() : 0;
+    }
+
+    /**
+     * Getter for the fraction of the opened cells in the site mode, or of the opened bonds in the bond mode.
+     */
+    public double openedFraction() {
+        return (mode == Mode.BOND)
+                ? (double) openedBondsCount() / bondsCount()
+                : (double) openedCellsCount() / grid.cellsCount();
+    }
+
+    /**
+     * Counts the bonds of a square lattice
+     */
+    private static int bondsCount(int nRows, int nCols, boolean periodic) {
+        int rightBonds = nRows * ((periodic && nCols > 1) ? nCols : nCols - 1);
+        return rightBonds + (nRows - 1) * nCols;
+    }
+
+    /**
+     * Starts tracking the sides of the grid touched by each cluster, so every Spanning criterion
+     * is checked at a constant cost on each union, without a rescan. The virtual nodes join
+     * all cells of the top row into one cluster, so the sides are kept by the roots of a second
+     * union-find of the cells only, which repeats the unions between the cells.
+     * The current state is scanned once. The LEFT and RIGHT sides are the x boundaries of a layer.
+     * A periodic lattice has no such boundaries, so a cluster gets both of them once it winds around
+     * the x axis: each cell keeps its displacement along x from its parent in the second union-find,
+     * and a link that disagrees with the displacements already known closes a loop around the lattice.
+     */
+    public void trackSpanning() {
+        if (lattice.periodic() && lattice.xCount() < 3) {
+            // the two links of a cell to the same neighbour would not be told apart
+            throw new IllegalStateException("Winding detection requires at least 3 cells along the x axis!");
+        }
+        if (spanningClusters == null) {
+            spanningClusters = new SpanningClusters(grid.cellsCount());
+            spanningSteps = new int[SPANNINGS.length];
+            initSpanning();
+        }
+    }
+
+    /**
+     * Checks whether the sides touched by the clusters are tracked
+     */
+    public boolean tracksSpanning() {
+        return spanningClusters != null;
+    }
+
+    /**
+     * Sets the clusters and their sides to the current state
+     */
+    private void initSpanning() {
+        spanningClusters.reset();
+        Arrays.fill(spanningSteps, -1);
+        for (int id1 = 0; id1 < grid.cellsCount(); id1++) {
+            int mask = isOpened(id1) ? sideMask(id1) : 0;
+            spanningClusters.setSides(id1, mask);
+            recordSpanning(mask);
+        }
+        for (int id1 = 0; id1 < grid.cellsCount(); id1++) {
+            if (!isOpened(id1)) {
+                continue;
+            }
+            int count = linkedNeighbours(id1, neighbourIDs);
+            for (int k = 0; k < count; k++) {
+                if (isOpened(neighbourIDs[k])) {
+                    unionSides(id1, neighbourIDs[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the sides of the grid touched by a cell
+     * @param id1 1D index of a cell
+     * @return Side bits of the cell
+     */
+    private int sideMask(int id1) {
+        int row = id1 / ncols;
+        int x = (id1 - row * ncols) % lattice.xCount();
+        int mask = 0;
+        // the same rows as the ones joined to the virtual nodes
+        if (row == 0) {
+            mask |= Side.TOP.bit();
+        } else if (row == nrows - 1) {
+            mask |= Side.BOTTOM.bit();
+        }
+        // a periodic lattice has no x boundaries, its clusters get these sides by winding around only
+        if (!lattice.periodic() && x == 0) {
+            mask |= Side.LEFT.bit();
+        }
+        if (!lattice.periodic() && x == lattice.xCount() - 1) {
+            mask |= Side.RIGHT.bit();
+        }
+        return mask;
+    }
+
+    /**
+     * Sets the sides of a cell that has just been opened, it is a cluster of its own yet
+     * @param id1 1D index of a cell
+     */
+    private void markSides(int id1) {
+        if (spanningClusters != null) {
+            int mask = sideMask(id1);
+            spanningClusters.setSides(id1, mask);
+            recordSpanning(mask);
+        }
+    }
+
+    /**
+     * Records the current step for each criterion met for the first time by a cluster
+     * @param mask Side bits of the cluster
+     */
+    private void recordSpanning(int mask) {
+        for (Spanning criterion : SPANNINGS) {
+            if (spanningSteps[criterion.ordinal()] < 0 && (mask & criterion.mask) == criterion.mask) {
+                spanningSteps[criterion.ordinal()] = (mode == Mode.BOND) ? openedBondsCount() : openedCellsCount();
+            }
+        }
+    }
+
+    /**
+     * Getter for the sides of the grid touched by the cluster of a cell, as Side bits, 0 for a closed cell
+     * @param id1 1D index of a cell
+     */
+    public int sidesOf(int id1) {
+        requireSpanning();
+        return isOpened(id1) ? spanningClusters.sidesOf(id1) : 0;
+    }
+
+    /**
+     * Checks whether a criterion has been met by any cluster so far
+     */
+    public boolean spans(Spanning criterion) {
+        return spanningStep(criterion) >= 0;
+    }
+
+    /**
+     * Getter for the step at which a criterion was first met: the number of the opened cells,
+     * or of the opened bonds in the bond mode, -1 if it has not been met yet.
+     * A batch of cells counts as a single step, and a state scanned by trackSpanning() is the current step.
+     */
+    public int spanningStep(Spanning criterion) {
+        requireSpanning();
+        return spanningSteps[criterion.ordinal()];
+    }
+
+    private void requireSpanning() {
+        if (spanningClusters == null) {
+            throw new IllegalStateException("Spanning is not tracked, call trackSpanning() first!");
+        }
+    }
+
+    /**
+     * Checks whether the connectivity keeps the cluster statistics,
+     * so the cluster getters can be called every iteration at a constant cost
+     */
+    public boolean tracksClusters() {
+        return connectivity instanceof IWeightedUnionFind;
+    }
+
+    /**
+     * Getter for the number of clusters of the opened cells.
+     * The clusters touching the top side are joined by the virtual top node and counted as one,
+     * the same holds for the bottom side.
+     */
+    public int clustersCount() {
+        IWeightedUnionFind clusters = weightedConnectivity();
+        // each closed cell and each virtual node not joined to any cell forms its own cluster
+        int singletons = closedCells.closedCount()
+                + (clusters.componentSize(vTopID) == 1 ? 1 : 0)
+                + (clusters.componentSize(vBottomID) == 1 ? 1 : 0);
+        return clusters.componentsCount() - singletons;
+    }
+
+    /**
+     * Getter for the number of opened cells in the largest cluster, without the virtual nodes.
+     * The clusters touching the top side are joined by the virtual top node and counted as one,
+     * the same holds for the bottom side.
+     */
+    public int largestClusterSize() {
+        if (openedCellsCount() == 0) {
+            return 0;
+        }
+        IWeightedUnionFind clusters = weightedConnectivity();
+        // only the clusters of the virtual nodes have less cells than elements
+        int topRoot = clusters.find(vTopID);
+        int bottomRoot = clusters.find(vBottomID);
+        int topSize = clusters.componentSize(topRoot);
+        int bottomSize = clusters.componentSize(bottomRoot);
+        int largest = (topRoot == bottomRoot) ? topSize - 2 : Math.max(topSize - 1, bottomSize - 1);
+        // the largest cluster without the virtual nodes is at most 2 elements smaller than the largest one;
+        // the closed cells are the clusters of 1 element, which never exceed an opened cell
+        int largestSize = clusters.largestComponentSize();
+        for (int size = largestSize; size > Math.max(largest, largestSize - 3); size--) {
+            int count = clusters.componentsOfSize(size)
+                    - (topSize == size ? 1 : 0)
+                    - (bottomRoot != topRoot && bottomSize == size ? 1 : 0);
+            if (count > 0) {
+                return size;
+            }
+        }
+        return largest;
+    }
+
+    private IWeightedUnionFind weightedConnectivity() {
+        if (!(connectivity instanceof IWeightedUnionFind)) {
+            throw new IllegalStateException("Cluster statistics require a weighted connectivity!");
+        }
+        return (IWeightedUnionFind) connectivity;
     }
 
     /**
@@ -77,25 +897,44 @@ public class PercolationSolver {
      * @param selectFromClosed If true, randomly select from the cells that are not opened yet
      */
     public void openRandom(boolean selectFromClosed) {
-        int randomRow, randomCol;
+        if (mode == Mode.BOND) {
+            openRandomBond(selectFromClosed);
+            return;
+        }
+        int selectedCellID;
         if (selectFromClosed) {
-            int[] closedCells = grid.cellsWithValue(
-                    Grid.is(Grid.Status.CLOSED), Comparison.Operator.EQUALS);
-            int randomSelect = rnd.nextInt(closedCells.length);
-            int selectedCellID = closedCells[randomSelect];
-            int[] indices = grid.i2(selectedCellID);
-            randomRow = indices[0];
-            randomCol = indices[1];
+            selectedCellID = closedCells.sample(rnd);
         } else {
-            randomRow = rnd.nextInt(grid.rowsCount());
-            randomCol = rnd.nextInt(grid.columnsCount());
+            selectedCellID = ncols * rnd.nextInt(nrows) + rnd.nextInt(ncols);
         }
 
         if (debug) {
-            Logger.write("Open a cell [", randomRow, ",", randomCol, "]\n");
+            int randomRow = selectedCellID / ncols;
+            Logger.write("Open a cell [", randomRow, ",", selectedCellID - ncols * randomRow, "]\n");
         }
 
-        open(randomRow, randomCol);
+        openUnchecked(selectedCellID);
+    }
+
+    private void openRandomBond(boolean selectFromClosed) {
+        int selectedBondID;
+        if (selectFromClosed) {
+            selectedBondID = closedBonds.sample(rnd);
+        } else {
+            // a missing bond beyond the boundaries is redrawn
+            do {
+                selectedBondID = rnd.nextInt(2 * grid.cellsCount());
+            } while (bondNeighbour(selectedBondID >> 1, selectedBondID & 1) < 0);
+        }
+
+        if (debug) {
+            int id1 = selectedBondID >> 1;
+            int randomRow = id1 / ncols;
+            Logger.write("Open a bond [", randomRow, ",", id1 - ncols * randomRow, "]",
+                    Bond.values()[selectedBondID & 1], "\n");
+        }
+
+        openBondUnchecked(selectedBondID);
     }
 
     /**
@@ -127,9 +966,14 @@ public class PercolationSolver {
 
     /**
      * Check all opened cells if they are connected to the top side of the grid,
-     * and updates the cell value accordingly to be equal to Grid.Status.OPENED_AND_FILLED
+     * and updates the cell value accordingly to be equal to Grid.Status.OPENED_AND_FILLED.
+     * Does nothing in the FillMode.INCREMENTAL mode, since open() keeps the cells up to date.
      */
     public void updateCellsFilledStatus() {
+        if (fillMode == FillMode.INCREMENTAL) {
+            return;
+        }
+
         /*int[] openedCellIDs = grid.cellsWithValue(
                 Grid.is(Grid.Status.OPENED), Comparison.Operator.GREATER_THAN);
         for (int id : openedCellIDs) {
@@ -146,8 +990,14 @@ public class PercolationSolver {
                 : Grid.is(Grid.Status.CLOSED);
 
         if (this.ll) {
-            IntStream.range(0, grid.cellsCount()).parallel().forEach(i -> {
-                grid.set(i, cellStatus.apply(i));
+            // split the cells into word-sized blocks, so the threads never share a word of the packed storage
+            int blockSize = PackedCellStorage.CELLS_PER_WORD;
+            int blocksCount = (grid.cellsCount() + blockSize - 1) / blockSize;
+            IntStream.range(0, blocksCount).parallel().forEach(block -> {
+                int end = Math.min(grid.cellsCount(), (block + 1) * blockSize);
+                for (int i = block * blockSize; i < end; i++) {
+                    grid.set(i, cellStatus.apply(i));
+                }
             });
         } else {
             for (int i = 0; i < grid.cellsCount(); i++) {
@@ -157,21 +1007,57 @@ public class PercolationSolver {
     }
 
     /**
-     * Checks if the 1D-way-indiced cell is potentially opened to fluid
-     * @param id1 1D index of a cell in a flatten array
-     * @return True if the cell is opened, false otherwise
+     * Flood-fills the opened cells that have just joined the top cluster.
+     * The cells already filled are the old part of the top cluster, so the fill stops there.
+     * The bottom virtual node is treated as a neighbour of every bottom cell,
+     * to reproduce the connectivity seen by the full rescan.
+     * @param startID 1D index of a cell connected to the top side
      */
-    private boolean isOpened(int id1) {
-        return grid.get(id1) > Grid.is(Grid.Status.CLOSED);
+    private void fillFrom(int startID) {
+        int filled = Grid.is(Grid.Status.OPENED_AND_FILLED);
+        int top = 0;
+        if (grid.get(startID) != filled) {
+            grid.set(startID, filled);
+            floodStack.set(top++, startID);
+        }
+        while (top > 0) {
+            int id = floodStack.get(--top);
+            int row = id / ncols;
+            int count = linkedNeighbours(id, neighbourIDs);
+            for (int k = 0; k < count; k++) {
+                top = pushUnfilled(neighbourIDs[k], top);
+            }
+            if (row == nrows - 1 && nrows > 1 && !bottomFilled) {
+                // the fluid reaches all the cells attached to the bottom virtual node
+                bottomFilled = true;
+                int first = (nrows - 1) * ncols;
+                for (int i = first; i < first + ncols; i++) {
+                    top = pushUnfilled(i, top);
+                }
+            }
+        }
     }
 
     /**
-     * Checks if the 2D-way-indiced cell is opened
-     * @param row Vertical index of a cell in a 2D grid
-     * @param col Horizontal index of a cell in a 2D grid
+     * Marks an opened, but not filled cell as filled, and pushes it to the flood stack
+     * @param id1 1D index of a cell
+     * @param top Current size of the flood stack
+     * @return Updated size of the flood stack
+     */
+    private int pushUnfilled(int id1, int top) {
+        if (grid.get(id1) == Grid.is(Grid.Status.OPENED)) {
+            grid.set(id1, Grid.is(Grid.Status.OPENED_AND_FILLED));
+            floodStack.set(top++, id1);
+        }
+        return top;
+    }
+
+    /**
+     * Checks if the 1D-way-indiced cell is potentially opened to fluid
+     * @param id1 1D index of a cell in a flatten array
      * @return True if the cell is opened, false otherwise
      */
-    private boolean isOpened(int row, int col) {
-        return isOpened(grid.i1(row, col));
+    private boolean isOpened(int id1) {
+        return grid.get(id1) > Grid.is(Grid.Status.CLOSED);
     }
 }
@@ -0,0 +1,149 @@
+package percolation;
+
+import unionfind.UnionFindType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A Monte Carlo estimator of the percolation threshold p*.
+ * Each trial opens random closed cells of an initially closed grid, or random closed bonds
+ * in the bond mode, until it percolates, and takes the fraction of opened ones as a sample of p*.
+ * The trials are spread over a pool of workers, each worker reuses
+ * its own grid and solver for all of its trials.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class PercolationStats {
+    private static final double CONFIDENCE_95 = 1.96;
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L; // spreads the seeds of successive trials
+
+    private final double[] thresholds;
+    private final PercolationSolver.Mode mode;
+
+    /**
+     * Performs independent trials on a square grid
+     * @param res     Grid resolution, a number of cells in each direction, at least 2
+     * @param trials  Number of trials
+     * @param seed    Seed of the first trial, the t-th trial is seeded by a value derived from it
+     * @param workers Number of threads to run the trials on
+     */
+    public PercolationStats(int res, int trials, long seed, int workers) {
+        this(res, trials, seed, workers, PercolationSolver.Mode.SITE);
+    }
+
+    /**
+     * Performs independent trials of site or bond percolation on a square grid
+     * @param res     Grid resolution, a number of cells in each direction, at least 2
+     * @param trials  Number of trials
+     * @param seed    Seed of the first trial, the t-th trial is seeded by a value derived from it
+     * @param workers Number of threads to run the trials on
+     * @param mode    Whether the cells or the bonds between them are opened
+     */
+    public PercolationStats(int res, int trials, long seed, int workers, PercolationSolver.Mode mode) {
+        if (res <= 0 || trials <= 0 || workers <= 0) {
+            throw new IllegalArgumentException("Resolution, trials and workers count should be positive!");
+        }
+        if (res < 2) {
+            // a single row is joined to the virtual top node only, so a trial would never end
+            throw new IllegalArgumentException("Resolution should be at least 2, a single row never percolates!");
+        }
+        thresholds = new double[trials];
+        this.mode = mode;
+
+        int tasksCount = Math.min(workers, trials);
+        ForkJoinPool pool = new ForkJoinPool(tasksCount);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(tasksCount);
+            for (int w = 0; w < tasksCount; w++) {
+                final int first = w;
+                tasks.add(() -> {
+                    runTrials(res, first, tasksCount, seed);
+                    return null;
+                });
+            }
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Trials were interrupted!", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Trial failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs every step-th trial starting from the first one on a single grid
+     * @param res   Grid resolution
+     * @param first Index of the first trial to run
+     * @param step  Distance between the indices of the trials to run
+     * @param seed  Seed of the whole experiment
+     */
+    private void runTrials(int res, int first, int step, long seed) {
+        Grid grid = new Grid(res, res);
+        PercolationSolver sol = new PercolationSolver(grid, Lattice.square(res, res, false),
+                UnionFindType.WEIGHTED_FAST, mode, false, false, PercolationSolver.FillMode.RESCAN);
+        for (int t = first; t < thresholds.length; t += step) {
+            sol.reset();
+            sol.setSeed(seed + t * SEED_STEP);
+            while (!sol.percolatesTotally()) {
+                sol.openRandom(true);
+            }
+            thresholds[t] = sol.openedFraction();
+        }
+    }
+
+    /**
+     * Getter for the threshold values obtained in each trial.
+     */
+    public double[] thresholds() {
+        return thresholds.clone();
+    }
+
+    /**
+     * Sample mean of the percolation threshold
+     */
+    public double mean() {
+        double sum = 0;
+        for (double x : thresholds) {
+            sum += x;
+        }
+        return sum / thresholds.length;
+    }
+
+    /**
+     * Sample standard deviation of the percolation threshold,
+     * NaN for a single trial
+     */
+    public double stddev() {
+        double mean = mean();
+        double sum = 0;
+        for (double x : thresholds) {
+            sum += (x - mean) * (x - mean);
+        }
+        return Math.sqrt(sum / (thresholds.length - 1));
+    }
+
+    /**
+     * Low endpoint of the 95% confidence interval
+     */
+    public double confidenceLo() {
+        return mean() - CONFIDENCE_95 * stddev() / Math.sqrt(thresholds.length);
+    }
+
+    /**
+     * High endpoint of the 95% confidence interval
+     */
+    public double confidenceHi() {
+        return mean() + CONFIDENCE_95 * stddev() / Math.sqrt(thresholds.length);
+    }
+}
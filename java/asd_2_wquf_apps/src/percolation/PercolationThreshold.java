@@ -0,0 +1,128 @@
+package percolation;
+
+import java.util.Arrays;
+
+/**
+ * Finds the exact step at which a given opening order of the cells
+ * first makes the grid percolate, and the critical cell opened at that step.
+ * The grid and the solver are reused for all searches.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class PercolationThreshold {
+
+    /**
+     * Enum representing the search method.
+     */
+    public enum Method {
+        ONE_PASS, // open the cells one by one until the top and bottom virtual nodes merge
+        BISECTION // bisect over the prefixes of the order, rebuilding each of them as a batch
+    }
+
+    private final Grid grid;
+    private final PercolationSolver solver;
+
+    /**
+     * Constructor for PercolationThreshold.
+     * @param nRows Vertical resolution, a number of cells in each row
+     * @param nCols Horizontal resolution, a number of cells in each column
+     */
+    public PercolationThreshold(int nRows, int nCols) {
+        grid = new Grid(nRows, nCols);
+        solver = new PercolationSolver(grid, false, false, PercolationSolver.FillMode.RESCAN);
+    }
+
+    /**
+     * Finds the first step of the opening order at which the grid percolates
+     * @param order  1D indices of the cells in the order of their opening
+     * @param method The search method
+     * @return The step and the critical cell, or a result that does not percolate
+     */
+    public Result find(int[] order, Method method) {
+        for (int id1 : order) {
+            if (id1 < 0 || id1 >= grid.cellsCount()) {
+                throw new IllegalArgumentException("Index out of range!");
+            }
+        }
+        int step = switch (method) {
+            case ONE_PASS -> findOnePass(order);
+            case BISECTION -> findBisection(order);
+        };
+        return new Result(step, step >= 0 ? order[step] : -1);
+    }
+
+    private int findOnePass(int[] order) {
+        solver.reset();
+        for (int step = 0; step < order.length; step++) {
+            solver.open(order[step]);
+            if (solver.percolatesTotally()) {
+                return step;
+            }
+        }
+        return -1;
+    }
+
+    private int findBisection(int[] order) {
+        if (order.length == 0 || !percolatesAfter(order, order.length)) {
+            return -1;
+        }
+        // the smallest prefix length that percolates is in (lo, hi]
+        int lo = 0;
+        int hi = order.length;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (percolatesAfter(order, mid)) {
+                hi = mid;
+            } else {
+                lo = mid;
+            }
+        }
+        return hi - 1;
+    }
+
+    /**
+     * Checks whether the grid percolates after opening a prefix of the order
+     * @param order  1D indices of the cells in the order of their opening
+     * @param length Length of the prefix
+     */
+    private boolean percolatesAfter(int[] order, int length) {
+        solver.reset();
+        return solver.open(Arrays.copyOf(order, length)).percolates();
+    }
+
+    /**
+     * The outcome of a search.
+     */
+    public static class Result {
+        private final int step;
+        private final int criticalCell;
+
+        public Result(int step, int criticalCell) {
+            this.step = step;
+            this.criticalCell = criticalCell;
+        }
+
+        /**
+         * Checks whether the grid percolates after the whole opening order
+         */
+        public boolean percolates() {
+            return step >= 0;
+        }
+
+        /**
+         * Getter for the 0-based step of the order that first makes the grid percolate, -1 if none.
+         */
+        public int step() {
+            return step;
+        }
+
+        /**
+         * Getter for the 1D index of the cell opened at that step, which closes the path, -1 if none.
+         */
+        public int criticalCell() {
+            return criticalCell;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package percolation;
+
+import java.util.Arrays;
+
+/**
+ * The clusters of the opened cells without the virtual nodes, each root keeps the mask of the sides
+ * of the grid touched by its cluster. A weighted quick-union with path halving, where every element
+ * also keeps its displacement along the x axis from its parent, unwrapped across a periodic boundary.
+ * A link between two cells of the same cluster whose displacements disagree closes a loop around
+ * the lattice, so the cluster winds around the x axis.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+final class SpanningClusters {
+    private final int[] parent; // parent of each element, a root is its own parent
+    private final int[] size; // elements of a subtree, valid for the roots only
+    private final int[] shift; // x of an element minus x of its parent, unwrapped
+    private final byte[] sides; // side bits of the cluster, valid for the roots only
+    private int rootShift; // x of the element minus x of its root, set by the last find()
+
+    /**
+     * Constructor for SpanningClusters.
+     * @param n The number of cells
+     */
+    SpanningClusters(int n) {
+        parent = new int[n];
+        size = new int[n];
+        shift = new int[n];
+        sides = new byte[n];
+        reset();
+    }
+
+    /**
+     * Makes each cell a cluster of its own touching no sides
+     */
+    void reset() {
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        Arrays.fill(size, 1);
+        Arrays.fill(shift, 0);
+        Arrays.fill(sides, (byte) 0);
+    }
+
+    /**
+     * Sets the sides of a cell which is a cluster of its own
+     * @param id1  1D index of a cell
+     * @param mask Side bits of the cell
+     */
+    void setSides(int id1, int mask) {
+        sides[id1] = (byte) mask;
+    }
+
+    /**
+     * Getter for the sides touched by the cluster of a cell, as Side bits.
+     */
+    int sidesOf(int id1) {
+        return sides[find(id1)];
+    }
+
+    /**
+     * Joins the clusters of two linked cells
+     * @param p      1D index of a cell
+     * @param q      1D index of a cell linked to it
+     * @param dx     x of q minus x of p along the link, -1, 0 or 1
+     * @param wraps  Side bits to add to the cluster if the link closes a loop around the lattice
+     * @return Side bits of the joined cluster if they have changed, -1 otherwise
+     */
+    int union(int p, int q, int dx, int wraps) {
+        int rootP = find(p);
+        int shiftP = rootShift;
+        int rootQ = find(q);
+        int shiftQ = rootShift;
+        if (rootP == rootQ) {
+            // x(p) + dx and x(q) are the same cell, a whole number of windings apart
+            int mask = sides[rootP];
+            if (shiftP + dx == shiftQ || (mask | wraps) == mask) {
+                return -1;
+            }
+            sides[rootP] = (byte) (mask | wraps);
+            return sides[rootP];
+        }
+        int merged = sides[rootP] | sides[rootQ];
+        // x(rootP) - x(rootQ) in the coordinates of the joined cluster
+        int rootsShift = shiftQ - shiftP - dx;
+        // make smaller root point to larger one
+        if (size[rootP] < size[rootQ]) {
+            parent[rootP] = rootQ;
+            shift[rootP] = rootsShift;
+            size[rootQ] += size[rootP];
+            sides[rootQ] = (byte) merged;
+        } else {
+            parent[rootQ] = rootP;
+            shift[rootQ] = -rootsShift;
+            size[rootP] += size[rootQ];
+            sides[rootP] = (byte) merged;
+        }
+        return merged;
+    }
+
+    /**
+     * Finds the root of a cell and keeps the displacement from it in rootShift
+     */
+    private int find(int p) {
+        int total = 0;
+        // point every other node of the path to its grandparent, carrying the displacements along
+        while (p != parent[p]) {
+            int up = parent[p];
+            shift[p] += shift[up];
+            parent[p] = parent[up];
+            total += shift[p];
+            p = parent[p];
+        }
+        rootShift = total;
+        return p;
+    }
+}
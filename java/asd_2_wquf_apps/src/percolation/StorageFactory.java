@@ -0,0 +1,25 @@
+package percolation;
+
+/**
+ * A source of the per-cell integer arrays of a solver, such as the index of the closed cells,
+ * so a run may keep them off the heap in the same way as the cells of its Grid.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+@FunctionalInterface
+public interface StorageFactory {
+    /**
+     * The arrays on the heap.
+     */
+    StorageFactory HEAP = (name, length) -> new IntCellStorage(length);
+
+    /**
+     * Creates a storage, its initial values are overwritten by the solver.
+     * @param name The name of the array, unique among the arrays of a solver
+     * @param length The number of elements
+     * @return The storage of the array
+     */
+    CellStorage create(String name, int length);
+}
@@ -0,0 +1,279 @@
+package percolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Labels the clusters of the opened cells of a whole grid on multiple threads.
+ * The grid is split into horizontal strips, each strip is labelled on its own thread
+ * by a union-find over its own range of cells; then the strips are merged
+ * by uniting the cells across each shared boundary, and the top and bottom rows
+ * are joined to the virtual top and bottom nodes in the same way as PercolationSolver does.
+ * The root of a cluster is always its smallest index, so the label of a cell is
+ * the smallest index of the cells connected to it, whatever the order of the unions is.
+ * The strips of every labelling run on the same pool and on the calling thread, so no threads are started per call.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+public class StripLabeller {
+    private final int nrows;
+    private final int ncols;
+    private final int strips;
+    private final ForkJoinPool pool; // runs the strips of every labelling, owned by the caller
+    private final int vTopID; // virtual top node, above all cells of the top row
+    private final int vBottomID; // virtual bottom node, below all cells of the bottom row
+    private final int[] parent; // parent of each cell and of the virtual nodes, a root is its own parent
+    private final int[] size; // opened cells of a cluster, valid for the roots only
+    private final int[] labels; // the label of each cell, -1 if closed
+    private final int[] stripClusters; // clusters rooted in each strip
+    private final int[] stripLargest; // the largest cluster rooted in each strip
+    private int clustersCount;
+    private int largestClusterSize;
+    private boolean percolates;
+
+    /**
+     * Constructor for StripLabeller, the strips run on the common pool.
+     * @param nRows  Vertical resolution, a number of cells in each row
+     * @param nCols  Horizontal resolution, a number of cells in each column
+     * @param strips Number of strips, each labelled on its own thread
+     */
+    public StripLabeller(int nRows, int nCols, int strips) {
+        this(nRows, nCols, strips, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for StripLabeller.
+     * @param nRows  Vertical resolution, a number of cells in each row
+     * @param nCols  Horizontal resolution, a number of cells in each column
+     * @param strips Number of strips, each labelled on its own thread
+     * @param pool   Threads to run the strips on, reused by every labelling and never shut down by the labeller
+     */
+    public StripLabeller(int nRows, int nCols, int strips, ForkJoinPool pool) {
+        if (nRows <= 0 || nCols <= 0 || strips <= 0) {
+            throw new IllegalArgumentException("Resolution and strips count should be positive!");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool should not be null!");
+        }
+        this.nrows = nRows;
+        this.ncols = nCols;
+        this.strips = Math.min(strips, nRows);
+        this.pool = pool;
+        int totalCells = nRows * nCols;
+        this.vTopID = totalCells;
+        this.vBottomID = totalCells + 1;
+        parent = new int[totalCells + 2];
+        size = new int[totalCells + 2];
+        labels = new int[totalCells];
+        stripClusters = new int[this.strips];
+        stripLargest = new int[this.strips];
+    }
+
+    /**
+     * Labels the clusters of the current state of a grid
+     * @param grid The grid of cells of the same resolution
+     */
+    public void label(Grid grid) {
+        if (grid.rowsCount() != nrows || grid.columnsCount() != ncols) {
+            throw new IllegalArgumentException("Grid resolution should match the labeller one!");
+        }
+        runStrips(strip -> labelStrip(grid, strip));
+
+        // unite the cells across the boundaries of the strips
+        for (int strip = 1; strip < strips; strip++) {
+            int row = firstRow(strip);
+            for (int col = 0; col < ncols; col++) {
+                int id1 = row * ncols + col;
+                if (labels[id1] >= 0 && labels[id1 - ncols] >= 0) {
+                    union(id1, id1 - ncols);
+                }
+            }
+        }
+        // join the top and the bottom rows to the virtual nodes, as the solver does
+        parent[vTopID] = vTopID;
+        parent[vBottomID] = vBottomID;
+        size[vTopID] = 0;
+        size[vBottomID] = 0;
+        int lastRow = ncols * (nrows - 1);
+        for (int col = 0; col < ncols; col++) {
+            if (labels[col] >= 0) {
+                union(col, vTopID);
+            }
+            // a single row is joined to the top node only
+            if (nrows > 1 && labels[lastRow + col] >= 0) {
+                union(lastRow + col, vBottomID);
+            }
+        }
+        percolates = find(vTopID) == find(vBottomID);
+
+        // the parents are only read from now on, so the strips may look up the roots concurrently
+        runStrips(this::countStrip);
+        clustersCount = 0;
+        largestClusterSize = 0;
+        for (int strip = 0; strip < strips; strip++) {
+            clustersCount += stripClusters[strip];
+            largestClusterSize = Math.max(largestClusterSize, stripLargest[strip]);
+        }
+    }
+
+    private int firstRow(int strip) {
+        return (int) ((long) strip * nrows / strips);
+    }
+
+    /**
+     * Unites the opened cells within a strip, which touch only the cells of this strip
+     */
+    private void labelStrip(Grid grid, int strip) {
+        int[] rowData = new int[ncols];
+        int closed = Grid.is(Grid.Status.CLOSED);
+        int first = firstRow(strip);
+        int last = firstRow(strip + 1);
+        for (int row = first; row < last; row++) {
+            grid.readRow(row, rowData);
+            for (int col = 0; col < ncols; col++) {
+                int id1 = row * ncols + col;
+                parent[id1] = id1;
+                if (rowData[col] == closed) {
+                    size[id1] = 0;
+                    labels[id1] = -1;
+                    continue;
+                }
+                // the label only marks an opened cell until the roots are known
+                size[id1] = 1;
+                labels[id1] = 0;
+                if (col > 0 && labels[id1 - 1] >= 0) {
+                    union(id1, id1 - 1);
+                }
+                if (row > first && labels[id1 - ncols] >= 0) {
+                    union(id1, id1 - ncols);
+                }
+            }
+        }
+    }
+
+    /**
+     * Labels the cells of a strip by their roots and counts the clusters rooted in it
+     */
+    private void countStrip(int strip) {
+        int clusters = 0;
+        int largest = 0;
+        for (int id1 = firstRow(strip) * ncols; id1 < firstRow(strip + 1) * ncols; id1++) {
+            if (labels[id1] < 0) {
+                continue;
+            }
+            int root = id1;
+            while (root != parent[root]) {
+                root = parent[root];
+            }
+            labels[id1] = root;
+            if (root == id1) {
+                clusters++;
+                largest = Math.max(largest, size[id1]);
+            }
+        }
+        stripClusters[strip] = clusters;
+        stripLargest[strip] = largest;
+    }
+
+    private int find(int i) {
+        while (i != parent[i]) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Links the root of the larger index under the root of the smaller one
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        if (rootP < rootQ) {
+            parent[rootQ] = rootP;
+            size[rootP] += size[rootQ];
+        } else {
+            parent[rootP] = rootQ;
+            size[rootQ] += size[rootP];
+        }
+    }
+
+    private void runStrips(StripTask task) {
+        if (strips == 1) {
+            // nothing to run concurrently, so no thread hand-off either
+            task.run(0);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(strips - 1);
+        for (int s = 1; s < strips; s++) {
+            final int strip = s;
+            futures.add(pool.submit(() -> task.run(strip)));
+        }
+        Throwable failure = null;
+        try {
+            // the calling thread labels the first strip instead of waiting idle
+            task.run(0);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // all strips should be finished before the shared arrays are touched again
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Labelling was interrupted!", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Labelling failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StripTask {
+        void run(int strip);
+    }
+
+    /**
+     * Getter for the label of a cell, the smallest index of the cells connected to it, -1 if closed.
+     * The cells of the top row are connected through the virtual top node, the same holds for the bottom row.
+     * @param id1 1D index of a cell in a 2D grid
+     */
+    public int label(int id1) {
+        return labels[id1];
+    }
+
+    /**
+     * Checks whether the grid percolates from any cell of the top layer to any cell of the bottom layer
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Getter for the number of clusters of the opened cells.
+     */
+    public int clustersCount() {
+        return clustersCount;
+    }
+
+    /**
+     * Getter for the number of opened cells in the largest cluster.
+     */
+    public int largestClusterSize() {
+        return largestClusterSize;
+    }
+}
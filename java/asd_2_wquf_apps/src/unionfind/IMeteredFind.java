@@ -0,0 +1,27 @@
+/*
+ * File: IMeteredFind.java
+ * Description: An interface
+ * for the UnionFind-like data structures that report the path of a root lookup.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+import utils.Metrics;
+
+/**
+ * The metered lookup is a separate method, so the plain find() keeps no counting code.
+ */
+public interface IMeteredFind extends IUnionFind {
+    /**
+     * Finds the root of the cluster containing p-th element, the same as find(),
+     * and records the path length and the compressions of the lookup
+     * @param p       Index of the element
+     * @param metrics Destination of the path length and the compressions
+     * @return Index of the root
+     */
+    int find(int p, Metrics metrics);
+}
@@ -16,8 +16,16 @@ public interface IUnionFind {
      * Connects p-th element to q-th element
      * @param p Index of an element to be connected
      * @param q Index of an element to connect to
+     * @return True if two clusters were merged, false if the elements were already connected
      */
-    void union(int p, int q);
+    boolean union(int p, int q);
+
+    /**
+     * Finds the canonical element of the cluster containing p-th element
+     * @param p Index of the element
+     * @return Index of the canonical element, the same for all elements of a cluster
+     */
+    int find(int p);
 
     /**
      * Checks whether two elements are connected
@@ -27,6 +35,26 @@ public interface IUnionFind {
      */
     boolean connected(int p, int q);
 
+    /**
+     * Restores the initial state in place, each element forms an individual own cluster
+     */
+    void reset();
+
+    /**
+     * Getter for the total number of elements in collection
+     * @return The number of elements
+     */
+    int elementsCount();
+
+    /**
+     * Checks whether union(), find() and connected() may be called from many threads at once,
+     * so a decorator reports the capability of the data structure it wraps
+     * @return True if the data structure is safe for concurrent updates
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
     /**
      * Makes a string of current connectivity pattern
      * @return A string representation of the connectivity pattern
@@ -0,0 +1,46 @@
+/*
+ * File: IWeightedUnionFind.java
+ * Description: An interface
+ * for the UnionFind-like data structures that keep the sizes of their clusters.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+/**
+ * The cluster statistics are updated by each merge at a constant cost,
+ * so they can be read at any time without scanning the elements.
+ */
+public interface IWeightedUnionFind extends IUnionFind {
+    /**
+     * Getter for the number of elements in the cluster containing p-th element
+     * @param p Index of the element
+     * @return Size of the cluster
+     */
+    int componentSize(int p);
+
+    /**
+     * Getter for the total number of clusters
+     */
+    int componentsCount();
+
+    /**
+     * Getter for the number of clusters of exactly the given size
+     * @param size Size of a cluster, from 1 to elementsCount()
+     * @return The number of clusters, a bin of the cluster size histogram, which is built on the first call
+     */
+    int componentsOfSize(int size);
+
+    /**
+     * Getter for the root of the largest cluster, the earliest one to reach its size among equal ones
+     */
+    int largestComponentRoot();
+
+    /**
+     * Getter for the number of elements in the largest cluster
+     */
+    int largestComponentSize();
+}
@@ -34,7 +34,19 @@ public class UnionFind implements IUnionFind {
     }
 
     @Override
-    public void union(int p, int q) {
+    public void reset() {
+        for (int i = 0; i < id.length; i++) {
+            id[i] = i;
+        }
+    }
+
+    @Override
+    public int elementsCount() {
+        return id.length;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
         if (debug) {
             Logger.writeLine(String.format("union(%d, %d):", p, q));
             Logger.write("before:\t");
@@ -44,7 +56,7 @@ public class UnionFind implements IUnionFind {
         // No need to connect the elements,
         // if they are already connected
         if (connected(p, q)) {
-            return;
+            return false;
         }
 
         callUnion(p, q);
@@ -54,6 +66,12 @@ public class UnionFind implements IUnionFind {
             print();
             Logger.writeLine();
         }
+        return true;
+    }
+
+    @Override
+    public int find(int p) {
+        return id[p];
     }
 
     @Override
@@ -0,0 +1,166 @@
+/*
+ * File: UnionFindConcurrent.java
+ * Description: A lock-free QuickUnion that may be updated from many threads at once.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+import utils.Logger;
+import utils.Metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A concurrent QuickUnion in the style of Anderson-Woll and Jayanti-Tarjan.
+ * A root is linked under another one by a single CAS of its parent pointer,
+ * and the 'find' halves the paths by CAS as well, so no thread ever blocks another one.
+ * The roots are linked in the order of a fixed pseudo-random priority of the elements,
+ * which keeps the trees shallow without storing any sizes or ranks.
+ * All methods but reset() and print() are safe to call from any thread.
+ */
+public final class UnionFindConcurrent implements IMeteredFind {
+    private final AtomicIntegerArray id; // parent of each element, a root is its own parent
+
+    /**
+     * Create a UnionFindConcurrent data structure
+     * @param n Total number of elements in collection
+     */
+    public UnionFindConcurrent(int n) {
+        id = new AtomicIntegerArray(n);
+        reset();
+    }
+
+    /**
+     * Restores the initial state, should not run concurrently with other operations
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < id.length(); i++) {
+            id.set(i, i);
+        }
+    }
+
+    @Override
+    public int elementsCount() {
+        return id.length();
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public int find(int p) {
+        while (true) {
+            int parent = id.get(p);
+            if (parent == p) {
+                return p;
+            }
+            int grandParent = id.get(parent);
+            if (parent != grandParent) {
+                // may fail if another thread has already moved the pointer up, that is fine too
+                id.compareAndSet(p, parent, grandParent);
+            }
+            p = grandParent;
+        }
+    }
+
+    @Override
+    public int find(int p, Metrics metrics) {
+        int pathLength = 0;
+        int compressions = 0;
+        while (true) {
+            int parent = id.get(p);
+            if (parent == p) {
+                metrics.recordFind(pathLength, compressions);
+                return p;
+            }
+            int grandParent = id.get(parent);
+            if (parent != grandParent) {
+                // only the pointers moved by this thread are counted
+                if (id.compareAndSet(p, parent, grandParent)) {
+                    compressions++;
+                }
+                pathLength += 2;
+            } else {
+                pathLength++;
+            }
+            p = grandParent;
+        }
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) {
+                return false;
+            }
+            // link the root of lower priority under the other one,
+            // retry if it is not a root anymore
+            if (precedes(rootP, rootQ)) {
+                if (id.compareAndSet(rootP, rootP, rootQ)) {
+                    return true;
+                }
+            } else if (id.compareAndSet(rootQ, rootQ, rootP)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean connected(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) {
+                return true;
+            }
+            // the answer is valid only if rootP has not been linked meanwhile
+            if (id.get(rootP) == rootP) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Checks whether p-th element has lower linking priority than q-th one
+     */
+    private static boolean precedes(int p, int q) {
+        int priorityP = priority(p);
+        int priorityQ = priority(q);
+        return priorityP < priorityQ || (priorityP == priorityQ && p < q);
+    }
+
+    /**
+     * A pseudo-random but fixed priority of an element, the murmur3 finalizer of its index
+     */
+    private static int priority(int i) {
+        i ^= i >>> 16;
+        i *= 0x85EBCA6B;
+        i ^= i >>> 13;
+        i *= 0xC2B2AE35;
+        i ^= i >>> 16;
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < id.length(); i++) {
+            str.append(id.get(i)).append(" ");
+        }
+        return str.toString();
+    }
+
+    @Override
+    public void print() {
+        Logger.writeLine(this.toString());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * File: UnionFindDebug.java
+ * Description: A decorator printing out the connectivity info
+ * of any UnionFind-like data structure after each operation.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+import utils.Logger;
+
+/**
+ * Prints out the connectivity info of the wrapped data structure after each operation,
+ * so the wrapped one does not need any debug branches
+ */
+public class UnionFindDebug implements IUnionFind {
+    private final IUnionFind inner;
+
+    /**
+     * Wraps a data structure
+     * @param inner The data structure to print out
+     */
+    public UnionFindDebug(IUnionFind inner) {
+        this.inner = inner;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        Logger.writeLine(String.format("union(%d, %d):", p, q));
+        Logger.write("before:\t");
+        print();
+
+        boolean merged = inner.union(p, q);
+
+        Logger.write("after:\t");
+        print();
+        Logger.writeLine();
+        return merged;
+    }
+
+    @Override
+    public int find(int p) {
+        int result = inner.find(p);
+        Logger.writeLine(String.format("find(%d) = %d", p, result));
+        return result;
+    }
+
+    @Override
+    public boolean connected(int p, int q) {
+        boolean result = inner.connected(p, q);
+        Logger.writeLine(String.format("connected(%d, %d) = %b", p, q, result));
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        inner.reset();
+    }
+
+    @Override
+    public int elementsCount() {
+        return inner.elementsCount();
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+
+    @Override
+    public void print() {
+        Logger.writeLine(this.toString());
+    }
+}
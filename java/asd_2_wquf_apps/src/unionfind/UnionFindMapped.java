@@ -0,0 +1,184 @@
+/*
+ * File: UnionFindMapped.java
+ * Description: A weighted QuickUnion with path halving
+ * keeping its arrays off the heap in memory-mapped files.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+import io.MappedIntArray;
+import utils.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The same algorithm as UnionFindQUWeightedFast, but the parent and size arrays
+ * are memory-mapped files indexed by long, so they take no heap. The parents and sizes
+ * are stored as unsigned 32-bit integers, so the collection may hold up to 2^32 - 1 elements.
+ * The IUnionFind methods address the first 2^31 - 1 elements, the long overloads address all of them.
+ * When both files exist with the same length, they are reopened with the clusters
+ * of a previous run, otherwise each element forms an individual own cluster.
+ */
+public final class UnionFindMapped implements IUnionFind, AutoCloseable {
+    private static final long MAX_ELEMENTS = (1L << 32) - 1;
+
+    private final MappedIntArray id; // parent of each element, a root is its own parent
+    private final MappedIntArray size; // size[i] in the number of elements in a subtree rooted at i
+
+    /**
+     * Create or reopen a UnionFindMapped data structure
+     * @param parentFile File of the parent array
+     * @param sizeFile   File of the size array
+     * @param n          Total number of elements in collection
+     * @throws IOException If the files can not be created or mapped
+     */
+    public UnionFindMapped(Path parentFile, Path sizeFile, long n) throws IOException {
+        if (n <= 0 || n > MAX_ELEMENTS) {
+            throw new IllegalArgumentException("Elements count should be in [1, 2^32 - 1]!");
+        }
+        id = new MappedIntArray(parentFile, n);
+        size = new MappedIntArray(sizeFile, n);
+        if (!(id.reopened() && size.reopened())) {
+            reset();
+        }
+    }
+
+    /**
+     * Checks whether the clusters of a previous run were reopened
+     */
+    public boolean reopened() {
+        return id.reopened() && size.reopened();
+    }
+
+    /**
+     * Getter for the total number of elements in collection
+     */
+    public long length() {
+        return id.length();
+    }
+
+    @Override
+    public void reset() {
+        for (long i = 0; i < id.length(); i++) {
+            id.set(i, (int) i);
+        }
+        size.fill(1);
+    }
+
+    @Override
+    public int elementsCount() {
+        if (id.length() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many elements for an int count, use length()!");
+        }
+        return (int) id.length();
+    }
+
+    private long parent(long i) {
+        return Integer.toUnsignedLong(id.get(i));
+    }
+
+    /**
+     * Finds the root of the cluster containing p-th element
+     * @param p Index of the element
+     * @return Index of the root
+     */
+    public long find(long p) {
+        // point every other node of the path to its grandparent
+        long parent = parent(p);
+        while (p != parent) {
+            long grandparent = parent(parent);
+            id.set(p, (int) grandparent);
+            p = grandparent;
+            parent = parent(p);
+        }
+        return p;
+    }
+
+    /**
+     * Connects p-th element to q-th element
+     * @return True if two clusters were merged, false if the elements were already connected
+     */
+    public boolean union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) {
+            return false;
+        }
+        long sizeP = Integer.toUnsignedLong(size.get(rootP));
+        long sizeQ = Integer.toUnsignedLong(size.get(rootQ));
+        // make smaller root point to larger one
+        if (sizeP < sizeQ) {
+            id.set(rootP, (int) rootQ);
+            size.set(rootQ, (int) (sizeP + sizeQ));
+        } else {
+            id.set(rootQ, (int) rootP);
+            size.set(rootP, (int) (sizeP + sizeQ));
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether two elements are connected
+     */
+    public boolean connected(long p, long q) {
+        return find(p) == find(q);
+    }
+
+    /**
+     * Getter for the number of elements in the cluster containing p-th element
+     */
+    public long componentSize(long p) {
+        return Integer.toUnsignedLong(size.get(find(p)));
+    }
+
+    @Override
+    public int find(int p) {
+        long root = find((long) p);
+        if (root > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Root index exceeds the int range, use find(long)!");
+        }
+        return (int) root;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        return union((long) p, (long) q);
+    }
+
+    @Override
+    public boolean connected(int p, int q) {
+        return connected((long) p, (long) q);
+    }
+
+    /**
+     * Writes the changed arrays to the files
+     */
+    public void force() {
+        id.force();
+        size.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (long i = 0; i < id.length(); i++) {
+            str.append(parent(i)).append(" ");
+        }
+        return str.toString();
+    }
+
+    @Override
+    public void print() {
+        Logger.writeLine(this.toString());
+    }
+}
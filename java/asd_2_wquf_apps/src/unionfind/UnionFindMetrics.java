@@ -0,0 +1,140 @@
+/*
+ * File: UnionFindMetrics.java
+ * Description: A decorator counting the operations
+ * of any UnionFind-like data structure.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+import utils.Logger;
+import utils.Metrics;
+
+/**
+ * Counts the unions, the links and the root lookups of the wrapped data structure,
+ * so the wrapped one does not need any counting branches.
+ * A union is counted as its two lookups and a link of the roots found.
+ * The path lengths and the compressions are recorded for the data structures implementing IMeteredFind,
+ * the other ones count the lookups only. The counters are striped, so the decorator
+ * is as safe for the concurrent calls as the wrapped data structure is.
+ */
+public class UnionFindMetrics implements IUnionFind {
+    private final IUnionFind inner;
+    private final IMeteredFind metered; // the same as inner, null if it does not report its paths
+    private final Metrics metrics;
+
+    /**
+     * Wraps a data structure
+     * @param inner   The data structure to count the operations of
+     * @param metrics Destination of the counts
+     */
+    public UnionFindMetrics(IUnionFind inner, Metrics metrics) {
+        this.inner = inner;
+        this.metered = (inner instanceof IMeteredFind) ? (IMeteredFind) inner : null;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wraps a data structure, keeping the cluster statistics of a weighted one available
+     * @param inner   The data structure to count the operations of
+     * @param metrics Destination of the counts
+     * @return The decorator, an IWeightedUnionFind if the wrapped one is
+     */
+    public static UnionFindMetrics wrap(IUnionFind inner, Metrics metrics) {
+        return (inner instanceof IWeightedUnionFind)
+                ? new Weighted((IWeightedUnionFind) inner, metrics)
+                : new UnionFindMetrics(inner, metrics);
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        metrics.increment(Metrics.Counter.UNIONS);
+        int rootP = find(p);
+        int rootQ = find(q);
+        // the roots are looked up again by the wrapped union at the cost of a single step each
+        boolean merged = rootP != rootQ && inner.union(rootP, rootQ);
+        if (merged) {
+            metrics.increment(Metrics.Counter.LINKS);
+        }
+        return merged;
+    }
+
+    @Override
+    public int find(int p) {
+        if (metered != null) {
+            return metered.find(p, metrics);
+        }
+        metrics.increment(Metrics.Counter.FINDS);
+        return inner.find(p);
+    }
+
+    @Override
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    @Override
+    public void reset() {
+        inner.reset();
+    }
+
+    @Override
+    public int elementsCount() {
+        return inner.elementsCount();
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return inner.isConcurrent();
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+
+    @Override
+    public void print() {
+        Logger.writeLine(this.toString());
+    }
+
+    /**
+     * The decorator of a weighted data structure, the cluster statistics are not counted.
+     */
+    private static final class Weighted extends UnionFindMetrics implements IWeightedUnionFind {
+        private final IWeightedUnionFind inner;
+
+        private Weighted(IWeightedUnionFind inner, Metrics metrics) {
+            super(inner, metrics);
+            this.inner = inner;
+        }
+
+        @Override
+        public int componentSize(int p) {
+            return inner.componentSize(p);
+        }
+
+        @Override
+        public int componentsCount() {
+            return inner.componentsCount();
+        }
+
+        @Override
+        public int componentsOfSize(int size) {
+            return inner.componentsOfSize(size);
+        }
+
+        @Override
+        public int largestComponentRoot() {
+            return inner.largestComponentRoot();
+        }
+
+        @Override
+        public int largestComponentSize() {
+            return inner.largestComponentSize();
+        }
+    }
+}
@@ -61,6 +61,11 @@ public class UnionFindQU extends UnionFind {
         return i;
     }
 
+    @Override
+    public int find(int p) {
+        return root(p);
+    }
+
     // make the p-th element to be a child of q-th element's parent
     // union(4, 3) = 4 is a child of 3's root (parent) element
     @Override
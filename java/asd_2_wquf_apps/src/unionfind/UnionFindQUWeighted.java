@@ -11,21 +11,98 @@
 
 package unionfind;
 
-public class UnionFindQUWeighted extends UnionFindQU {
+import java.util.Arrays;
+
+public class UnionFindQUWeighted extends UnionFindQU implements IWeightedUnionFind {
 
     protected int[] size; // size[i] in the number of elements in a subtree rooted at i
     protected int componentsCount;  // total number of clusters
+    protected int[] sizeHistogram; // sizeHistogram[s] is the number of clusters of s elements, null until requested
+    protected int largestRoot; // root of the largest cluster
+    protected int largestSize; // number of elements in the largest cluster
 
     public UnionFindQUWeighted(int n, boolean debug) {
         super(n, debug);
         // initially each element's index is its own root:
         // _id is the ID of the root (parent) element
 
-        componentsCount = n;
         size = new int[n];
-        for (int i = 0; i < n; i++) {
-            size[i] = 1;
+        resetSizes();
+    }
+
+    @Override
+    public int componentSize(int p) {
+        return size[root(p)];
+    }
+
+    @Override
+    public int componentsCount() {
+        return componentsCount;
+    }
+
+    @Override
+    public int componentsOfSize(int size) {
+        if (sizeHistogram == null) {
+            // built on the first request from the roots, so the runs that never ask
+            // do not pay 4 more bytes per element
+            sizeHistogram = new int[id.length + 1];
+            for (int i = 0; i < id.length; i++) {
+                if (id[i] == i) {
+                    sizeHistogram[this.size[i]]++;
+                }
+            }
+        }
+        return sizeHistogram[size];
+    }
+
+    @Override
+    public int largestComponentRoot() {
+        return largestRoot;
+    }
+
+    @Override
+    public int largestComponentSize() {
+        return largestSize;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        resetSizes();
+    }
+
+    private void resetSizes() {
+        int n = id.length;
+        Arrays.fill(size, 1);
+        if (sizeHistogram != null) {
+            Arrays.fill(sizeHistogram, 0);
+            sizeHistogram[1] = n;
         }
+        componentsCount = n;
+        largestRoot = 0;
+        largestSize = (n > 0) ? 1 : 0;
+    }
+
+    /**
+     * Updates the cluster statistics after merging two clusters
+     * @param root  Root of the merged cluster
+     * @param sizeP Size of the first cluster before the merge
+     * @param sizeQ Size of the second cluster before the merge
+     */
+    private void countMerge(int root, int sizeP, int sizeQ) {
+        if (sizeHistogram != null) {
+            sizeHistogram[sizeP]--;
+            sizeHistogram[sizeQ]--;
+            sizeHistogram[sizeP + sizeQ]++;
+        }
+        // the merged cluster is strictly larger than each of its parts,
+        // so it replaces the largest one if that was merged into it
+        if (sizeP + sizeQ > largestSize) {
+            largestRoot = root;
+            largestSize = sizeP + sizeQ;
+        }
+        // decrease total number of trees/clusters/components
+        componentsCount--;
     }
 
     /**
@@ -39,21 +116,23 @@ public class UnionFindQUWeighted extends UnionFindQU {
         int rootP = root(p);
         int rootQ = root(q);
         if (rootP == rootQ) return;
+        int sizeP = size[rootP];
+        int sizeQ = size[rootQ];
 
         // make smaller root point to larger one:
         // if p is smaller than q
-        if (size[rootP] < size[rootQ]) {
+        if (sizeP < sizeQ) {
             // then parent(p) = q
             setParent(rootP, rootQ);
-            size[rootQ] += size[rootP];
+            size[rootQ] += sizeP;
+            countMerge(rootQ, sizeP, sizeQ);
         }
         // if p is greater than q
         else {
             // then parent(q) = p
             setParent(rootQ, rootP);
-            size[rootP] += size[rootQ];
+            size[rootP] += sizeQ;
+            countMerge(rootP, sizeP, sizeQ);
         }
-        // decrease total number of trees/clusters/components
-        componentsCount--;
     }
 }
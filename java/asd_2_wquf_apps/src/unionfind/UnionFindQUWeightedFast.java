@@ -0,0 +1,179 @@
+/*
+ * File: UnionFindQUWeightedFast.java
+ * Description: A specialised weighted QuickUnion with path halving,
+ * without the debug output and the virtual calls of the UnionFind class family.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+import utils.Logger;
+import utils.Metrics;
+
+import java.util.Arrays;
+
+/**
+ * The same algorithm as UnionFindQUWeighted, but the union finds both roots
+ * only once and links them in the same pass. Wrap it into UnionFindDebug
+ * to print out the connectivity info after each operation.
+ */
+public final class UnionFindQUWeightedFast implements IWeightedUnionFind, IMeteredFind {
+    private final int[] id; // parent of each element, a root is its own parent
+    private final int[] size; // size[i] in the number of elements in a subtree rooted at i
+    private int[] sizeHistogram; // sizeHistogram[s] is the number of clusters of s elements, null until requested
+    private int componentsCount; // total number of clusters
+    private int largestRoot; // root of the largest cluster
+    private int largestSize; // number of elements in the largest cluster
+
+    /**
+     * Create a UnionFindQUWeightedFast data structure
+     * @param n Total number of elements in collection
+     */
+    public UnionFindQUWeightedFast(int n) {
+        id = new int[n];
+        size = new int[n];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < id.length; i++) {
+            id[i] = i;
+        }
+        Arrays.fill(size, 1);
+        if (sizeHistogram != null) {
+            Arrays.fill(sizeHistogram, 0);
+            sizeHistogram[1] = id.length;
+        }
+        componentsCount = id.length;
+        largestRoot = 0;
+        largestSize = (id.length > 0) ? 1 : 0;
+    }
+
+    @Override
+    public int elementsCount() {
+        return id.length;
+    }
+
+    @Override
+    public int componentSize(int p) {
+        return size[find(p)];
+    }
+
+    @Override
+    public int componentsCount() {
+        return componentsCount;
+    }
+
+    @Override
+    public int componentsOfSize(int size) {
+        if (sizeHistogram == null) {
+            // built on the first request from the roots, so the runs that never ask
+            // do not pay 4 more bytes per element
+            sizeHistogram = new int[id.length + 1];
+            for (int i = 0; i < id.length; i++) {
+                if (id[i] == i) {
+                    sizeHistogram[this.size[i]]++;
+                }
+            }
+        }
+        return sizeHistogram[size];
+    }
+
+    @Override
+    public int largestComponentRoot() {
+        return largestRoot;
+    }
+
+    @Override
+    public int largestComponentSize() {
+        return largestSize;
+    }
+
+    @Override
+    public int find(int p) {
+        // point every other node of the path to its grandparent
+        while (p != id[p]) {
+            id[p] = id[id[p]];
+            p = id[p];
+        }
+        return p;
+    }
+
+    @Override
+    public int find(int p, Metrics metrics) {
+        int pathLength = 0;
+        int compressions = 0;
+        while (p != id[p]) {
+            int parent = id[p];
+            int grandparent = id[parent];
+            if (grandparent != parent) {
+                id[p] = grandparent;
+                compressions++;
+                pathLength += 2;
+            } else {
+                pathLength++;
+            }
+            p = grandparent;
+        }
+        metrics.recordFind(pathLength, compressions);
+        return p;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return false;
+        }
+        int sizeP = size[rootP];
+        int sizeQ = size[rootQ];
+        // make smaller root point to larger one
+        int root;
+        if (sizeP < sizeQ) {
+            id[rootP] = rootQ;
+            root = rootQ;
+        } else {
+            id[rootQ] = rootP;
+            root = rootP;
+        }
+        int merged = sizeP + sizeQ;
+        size[root] = merged;
+        if (sizeHistogram != null) {
+            sizeHistogram[sizeP]--;
+            sizeHistogram[sizeQ]--;
+            sizeHistogram[merged]++;
+        }
+        // the merged cluster is strictly larger than each of its parts,
+        // so it replaces the largest one if that was merged into it
+        if (merged > largestSize) {
+            largestRoot = root;
+            largestSize = merged;
+        }
+        componentsCount--;
+        return true;
+    }
+
+    @Override
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (int anId : id) {
+            str.append(anId).append(" ");
+        }
+        return str.toString();
+    }
+
+    @Override
+    public void print() {
+        Logger.writeLine(this.toString());
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * File: UnionFindType.java
+ * Description: A selector of the UnionFind-like data structures.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package unionfind;
+
+/**
+ * Enum representing the available UnionFind-like data structures
+ */
+public enum UnionFindType {
+    QUICK_FIND,
+    QUICK_UNION,
+    WEIGHTED,
+    WEIGHTED_FAST,
+    RANK_FULL,
+    RANK_SPLITTING,
+    RANK_HALVING,
+    CONCURRENT;
+
+    /**
+     * Creates a data structure of this type
+     * @param n Total number of elements in collection
+     * @return A new data structure, each element forms an individual own cluster
+     */
+    public IUnionFind create(int n) {
+        return switch (this) {
+            case QUICK_FIND -> new UnionFind(n, false);
+            case QUICK_UNION -> new UnionFindQU(n, false);
+            case WEIGHTED -> new UnionFindQUWeighted(n, false);
+            case WEIGHTED_FAST -> new UnionFindQUWeightedFast(n);
+            case RANK_FULL -> new UnionFindQURank(n, UnionFindQURank.Compression.FULL);
+            case RANK_SPLITTING -> new UnionFindQURank(n, UnionFindQURank.Compression.SPLITTING);
+            case RANK_HALVING -> new UnionFindQURank(n, UnionFindQURank.Compression.HALVING);
+            case CONCURRENT -> new UnionFindConcurrent(n);
+        };
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * File: Metrics.java
+ * Description: Counters of the union-find operations, a histogram of the find path lengths,
+ * and the timings of the simulation phases.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot-path metrics of a run. All values are striped LongAdder cells,
+ * so the threads of a parallel run update them without contention and without losing counts.
+ * Nothing is measured without a Metrics instance: the union-find operations are counted
+ * by the unionfind.UnionFindMetrics decorator, and the phases are timed by the static helpers,
+ * which do nothing for a null instance.
+ */
+public class Metrics {
+    /**
+     * The last bucket of the path length histogram holds all longer paths.
+     */
+    public static final int MAX_PATH_LENGTH = 32;
+
+    /**
+     * Enum representing the counted union-find operations.
+     */
+    public enum Counter {
+        UNIONS,      // calls of union()
+        LINKS,       // unions that merged two clusters
+        FINDS,       // root lookups, a connected() check takes two
+        COMPRESSIONS // parent pointers moved up by the path compression
+    }
+
+    /**
+     * Enum representing the timed phases of an iteration.
+     */
+    public enum Phase {
+        OPEN,  // opening a cell or a bond
+        FILL,  // updating the 'filled' status of the cells
+        COUNT, // counting the cells and the clusters
+        EXPORT // writing the frames
+    }
+
+    private final LongAdder[] counters = newAdders(Counter.values().length);
+    private final LongAdder[] pathLengths = newAdders(MAX_PATH_LENGTH + 1);
+    private final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+    private final LongAdder[] phaseCalls = newAdders(Phase.values().length);
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Increments a counter
+     */
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    /**
+     * Records a root lookup
+     * @param pathLength   Number of the parent links from the element to its root
+     * @param compressions Number of the parent pointers moved up on the way
+     */
+    public void recordFind(int pathLength, int compressions) {
+        counters[Counter.FINDS.ordinal()].increment();
+        if (compressions > 0) {
+            counters[Counter.COMPRESSIONS.ordinal()].add(compressions);
+        }
+        pathLengths[Math.min(pathLength, MAX_PATH_LENGTH)].increment();
+    }
+
+    /**
+     * Adds the time of a single call of a phase
+     * @param phase The phase
+     * @param nanos Duration [ns]
+     */
+    public void addTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseCalls[phase.ordinal()].increment();
+    }
+
+    /**
+     * Takes a time stamp to time a phase from
+     * @param metrics The metrics, may be null
+     * @return The time stamp [ns], 0 without the metrics
+     */
+    public static long mark(Metrics metrics) {
+        return (metrics != null) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since a stamp to a phase, so the successive phases are timed by a chain of calls
+     * @param metrics The metrics, may be null
+     * @param phase   The phase that has just ended
+     * @param mark    The time stamp of the phase start
+     * @return The time stamp of the phase end [ns], 0 without the metrics
+     */
+    public static long lap(Metrics metrics, Phase phase, long mark) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.addTime(phase, now - mark);
+        return now;
+    }
+
+    /**
+     * Getter for the value of a counter.
+     */
+    public long count(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Getter for the number of the root lookups of a path length, the last one counts all longer paths.
+     * Only the union-find algorithms that report their paths are counted.
+     * @param pathLength Number of the parent links, from 0 to MAX_PATH_LENGTH
+     */
+    public long finds(int pathLength) {
+        return pathLengths[pathLength].sum();
+    }
+
+    /**
+     * Getter for the total time of a phase [ns].
+     */
+    public long nanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Getter for the number of the timed calls of a phase.
+     */
+    public long calls(Phase phase) {
+        return phaseCalls[phase.ordinal()].sum();
+    }
+
+    /**
+     * Sets all values to zero, should not run concurrently with the updates
+     */
+    public void reset() {
+        for (LongAdder[] adders : new LongAdder[][] {counters, pathLengths, phaseNanos, phaseCalls}) {
+            for (LongAdder adder : adders) {
+                adder.reset();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (Counter counter : Counter.values()) {
+            str.append(counter).append(" = ").append(count(counter)).append("\n");
+        }
+        str.append("Find path lengths:");
+        for (int length = 0; length <= MAX_PATH_LENGTH; length++) {
+            long finds = finds(length);
+            if (finds > 0) {
+                str.append(" ").append(length).append(length == MAX_PATH_LENGTH ? "+" : "").append(": ").append(finds);
+            }
+        }
+        str.append("\n");
+        for (Phase phase : Phase.values()) {
+            long calls = calls(phase);
+            str.append(phase).append(" = ").append(nanos(phase) / 1e6).append(" [ms] in ").append(calls)
+                    .append(" calls, ").append(calls > 0 ? nanos(phase) / calls : 0).append(" [ns] per call\n");
+        }
+        return str.toString();
+    }
+
+    /**
+     * Print out the metrics to console
+     */
+    public void print() {
+        Logger.write(this.toString());
+    }
+}
@@ -32,10 +32,11 @@ public class Stopwatch {
      * @return Elapsed time [s]
      */
     public double getElapsedTime() {
-        return (Stopwatch.now() - start) / 1000.0;
+        return (Stopwatch.now() - start) / 1e9;
     }
 
     private static long now() {
-        return System.currentTimeMillis();
+        // monotonic, unlike the wall clock
+        return System.nanoTime();
     }
 }
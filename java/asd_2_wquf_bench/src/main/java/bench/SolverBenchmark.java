@@ -0,0 +1,126 @@
+/*
+ * File: SolverBenchmark.java
+ * Description: Measures the hot paths of the percolation solver and the grid.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import percolation.Comparison;
+import percolation.Grid;
+import percolation.PercolationSolver;
+import percolation.StripLabeller;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+    private static final double POROSITY = 0.6; // fraction of cells opened before the rescan and count
+
+    @Param({"64", "256", "1024"})
+    public int res;
+
+    @Param({"INT", "PACKED"})
+    public Grid.Storage storage;
+
+    private int[] order; // random opening order of the cells
+    private PercolationSolver opening; // reopened from scratch by each open() call
+    private Grid serialGrid;
+    private PercolationSolver serial; // partially opened, rescans on a single thread
+    private PercolationSolver parallel; // partially opened, rescans on multiple threads
+    private StripLabeller serialLabeller; // labels the partially opened grid as a single strip
+    private StripLabeller parallelLabeller; // labels the partially opened grid in a strip per processor
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int n = res * res;
+        order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Random rnd = new Random(42);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        opening = new PercolationSolver(new Grid(res, res, storage), false, false, PercolationSolver.FillMode.RESCAN);
+        serialGrid = new Grid(res, res, storage);
+        serial = new PercolationSolver(serialGrid, false, false, PercolationSolver.FillMode.RESCAN);
+        parallel = new PercolationSolver(new Grid(res, res, storage), true, false, PercolationSolver.FillMode.RESCAN);
+        openPrefix(serial, (int) (POROSITY * n));
+        openPrefix(parallel, (int) (POROSITY * n));
+        serialLabeller = new StripLabeller(res, res, 1);
+        parallelLabeller = new StripLabeller(res, res, Runtime.getRuntime().availableProcessors());
+    }
+
+    private void openPrefix(PercolationSolver solver, int count) {
+        solver.reset();
+        for (int i = 0; i < count; i++) {
+            solver.open(order[i] / res, order[i] % res);
+        }
+    }
+
+    /**
+     * Opens all cells of the grid one by one, time per the whole grid
+     */
+    @Benchmark
+    public boolean open() {
+        openPrefix(opening, order.length);
+        return opening.percolatesTotally();
+    }
+
+    /**
+     * Re-checks the filled status of all cells of a partially opened grid on a single thread
+     */
+    @Benchmark
+    public void updateCellsFilledStatusSerial() {
+        serial.updateCellsFilledStatus();
+    }
+
+    /**
+     * Re-checks the filled status of all cells of a partially opened grid on multiple threads
+     */
+    @Benchmark
+    public void updateCellsFilledStatusParallel() {
+        parallel.updateCellsFilledStatus();
+    }
+
+    /**
+     * Labels the clusters of a partially opened grid on a single thread
+     */
+    @Benchmark
+    public int labelStripsSerial() {
+        serialLabeller.label(serialGrid);
+        return serialLabeller.clustersCount();
+    }
+
+    /**
+     * Labels the clusters of a partially opened grid in a strip per processor
+     */
+    @Benchmark
+    public int labelStripsParallel() {
+        parallelLabeller.label(serialGrid);
+        return parallelLabeller.clustersCount();
+    }
+
+    /**
+     * Counts the opened cells of a partially opened grid
+     */
+    @Benchmark
+    public int countOfCellsWithValue() {
+        return serialGrid.countOfCellsWithValue(Grid.is(Grid.Status.CLOSED), Comparison.Operator.GREATER_THAN);
+    }
+}
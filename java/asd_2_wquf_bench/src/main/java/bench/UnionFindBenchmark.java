@@ -0,0 +1,132 @@
+/*
+ * File: UnionFindBenchmark.java
+ * Description: Measures the union and connected operations
+ * of the UnionFind-like data structures.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import unionfind.IUnionFind;
+import unionfind.UnionFindType;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnionFindBenchmark {
+    private static final int OPERATIONS = 10_000;
+
+    /**
+     * The way pairs of elements to connect are chosen
+     */
+    public enum Workload {
+        RANDOM, // any two elements
+        GRID    // horizontally or vertically adjacent cells of a square grid
+    }
+
+    @Param({"QUICK_FIND", "QUICK_UNION", "WEIGHTED", "WEIGHTED_FAST", "RANK_FULL", "RANK_SPLITTING", "RANK_HALVING", "CONCURRENT"})
+    public UnionFindType impl;
+
+    @Param({"16", "64", "256"})
+    public int res;
+
+    @Param({"RANDOM", "GRID"})
+    public Workload workload;
+
+    private IUnionFind uf;
+    private int[] pairs; // p, q of each operation
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int n = res * res;
+        uf = impl.create(n);
+        Random rnd = new Random(42);
+        pairs = new int[2 * OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            int p = rnd.nextInt(n);
+            int q;
+            if (workload == Workload.RANDOM) {
+                q = rnd.nextInt(n);
+            } else {
+                // right neighbour if possible, otherwise the bottom one
+                boolean right = rnd.nextBoolean();
+                int row = p / res;
+                int col = p - row * res;
+                if (row == res - 1 || (right && col < res - 1)) {
+                    q = (col < res - 1) ? p + 1 : p - 1;
+                } else {
+                    q = p + res;
+                }
+            }
+            pairs[2 * i] = p;
+            pairs[2 * i + 1] = q;
+        }
+    }
+
+    /**
+     * Connects all pairs starting from the individual clusters
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void union(UnionState state) {
+        IUnionFind clusters = state.uf;
+        for (int i = 0; i < pairs.length; i += 2) {
+            clusters.union(pairs[i], pairs[i + 1]);
+        }
+    }
+
+    /**
+     * Queries a pair of a half-connected structure
+     */
+    @Benchmark
+    public boolean connected(ConnectedState state) {
+        int i = next;
+        next = (i + 2) % pairs.length;
+        return state.uf.connected(pairs[i], pairs[i + 1]);
+    }
+
+    @State(Scope.Thread)
+    public static class UnionState {
+        IUnionFind uf;
+
+        @Setup(Level.Trial)
+        public void setup(UnionFindBenchmark bench) {
+            uf = bench.impl.create(bench.res * bench.res);
+        }
+
+        /**
+         * Restores the individual clusters before each invocation, outside of the measured time,
+         * since an O(res^2) reset would outweigh the unions of the fast implementations
+         */
+        @Setup(Level.Invocation)
+        public void reset() {
+            uf.reset();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConnectedState {
+        IUnionFind uf;
+
+        @Setup(Level.Trial)
+        public void setup(UnionFindBenchmark bench) {
+            // connect only a half of the pairs to mix the answers
+            bench.uf.reset();
+            for (int i = 0; i < bench.pairs.length / 2; i += 2) {
+                bench.uf.union(bench.pairs[i], bench.pairs[i + 1]);
+            }
+            uf = bench.uf;
+        }
+    }
+}
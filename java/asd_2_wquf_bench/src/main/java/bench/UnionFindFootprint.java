@@ -0,0 +1,41 @@
+/*
+ * File: UnionFindFootprint.java
+ * Description: Estimates the heap memory per element of the UnionFind-like data structures.
+ * Authors:
+ *   - Ilya Tsivilskiy
+ * Copyright: (c) 2023 Ilya Tsivilskiy
+ * License: This file is licensed under the MIT License.
+ */
+
+package bench;
+
+import unionfind.IUnionFind;
+import unionfind.UnionFindType;
+
+/**
+ * Prints the heap growth per element after allocating a large data structure of each type.
+ * Run: java -cp target/benchmarks.jar bench.UnionFindFootprint [elementsCount]
+ */
+public class UnionFindFootprint {
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+        for (UnionFindType type : UnionFindType.values()) {
+            long before = usedMemory();
+            IUnionFind uf = type.create(n);
+            long after = usedMemory();
+            System.out.printf("%-15s %6.2f bytes per element%n", type, (double) (after - before) / n);
+            // keep the structure reachable until measured
+            if (uf.elementsCount() != n) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}